@@ -45,6 +45,21 @@ plugins {
     kotlin("jvm") version "1.6.10"
 }
 
+// Benchmarks live in src/jmh next to src/main.  They are not part of the published jar.
+// To run them all:
+// gradle jmh
+// To pass options to JMH (regex of benchmarks to run, forks, iterations, etc.):
+// gradle jmh -PjmhArgs="-f 1 -wi 3 -i 5 EqualsBenchmark"
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+val jmhImplementation: Configuration by configurations.getting {
+    extendsFrom(configurations.implementation.get())
+}
+
 dependencies {
     implementation("org.jetbrains.kotlin:kotlin-stdlib-jdk8")
     implementation("org.organicdesign:Indented:0.1.1")
@@ -57,6 +72,9 @@ dependencies {
     implementation("org.eclipse.jetty:jetty-http:11.0.8")
 
     testImplementation("org.junit.jupiter:junit-jupiter:5.8.2")
+
+    jmhImplementation("org.openjdk.jmh:jmh-core:1.35")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.35")
 //    testImplementation("org.slf4j:slf4j-simple:2.0.0-alpha5")
 }
 
@@ -73,6 +91,18 @@ tasks.test {
     useJUnitPlatform()
 }
 
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks in src/jmh"
+    group = "verification"
+    mainClass.set("org.openjdk.jmh.Main")
+    classpath = sourceSets["jmh"].runtimeClasspath
+    args((project.findProperty("jmhArgs") as String? ?: "").split(" ").filter { it.isNotBlank() })
+}
+
+tasks.named<JavaCompile>("compileJmhJava") {
+    options.encoding = "UTF-8"
+}
+
 tasks.register<Jar>("dokkaJar") {
     archiveClassifier.set("javadoc")
     dependsOn("dokkaJavadoc")
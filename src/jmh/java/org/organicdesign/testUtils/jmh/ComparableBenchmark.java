@@ -0,0 +1,55 @@
+package org.organicdesign.testUtils.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Times compareTo() on the objects from a {@link ComparableFixture}.  Throughput gives calls per
+ nanosecond, AverageTime gives nanoseconds per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class ComparableBenchmark {
+    @Param
+    public ComparableFixture fixture;
+
+    private Comparable least1;
+    private Comparable least2;
+    private Comparable middle1;
+    private Comparable greatest1;
+
+    @Setup
+    public void setup() {
+        List<Comparable> objs = fixture.objects();
+        least1 = objs.get(0);
+        least2 = objs.get(1);
+        middle1 = objs.get(2);
+        greatest1 = objs.get(4);
+    }
+
+    @Benchmark
+    public int compareToEqual() { return least1.compareTo(least2); }
+
+    @Benchmark
+    public int compareToLess() { return least1.compareTo(middle1); }
+
+    @Benchmark
+    public int compareToGreater() { return greatest1.compareTo(middle1); }
+}
@@ -0,0 +1,38 @@
+package org.organicdesign.testUtils.jmh;
+
+import org.organicdesign.testUtils.ComparableContract;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ The same six objects you would pass to {@link ComparableContract#testCompareTo}: least, middle,
+ and greatest pairs.  Add a constant here to benchmark another type.  {@link #objects()} runs the
+ contract before handing them out so we never time a broken compareTo().
+ */
+public enum ComparableFixture {
+    INTEGER(() -> Arrays.asList(Integer.valueOf(Integer.MIN_VALUE), Integer.valueOf(Integer.MIN_VALUE),
+                                Integer.valueOf(270), Integer.valueOf(270),
+                                Integer.valueOf(Integer.MAX_VALUE), Integer.valueOf(Integer.MAX_VALUE))),
+    DOUBLE(() -> Arrays.asList(Double.valueOf(0.1), Double.valueOf(0.1),
+                               Double.valueOf(0.2), Double.valueOf(0.2),
+                               Double.valueOf(0.3), Double.valueOf(0.3))),
+    STRING(() -> Arrays.asList(new String("Hello Aardvark"), new String("Hello Aardvark"),
+                               new String("Hello World"), new String("Hello World"),
+                               new String("Hello Zebra"), new String("Hello Zebra")));
+
+    private final Supplier<List<Comparable<?>>> supplier;
+
+    ComparableFixture(Supplier<List<Comparable<?>>> s) { supplier = s; }
+
+    /** Returns fresh, contract-checked objects: least1, least2, middle1, middle2, greatest1, greatest2 */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Comparable> objects() {
+        List<Comparable> objs = (List) supplier.get();
+        ComparableContract.testCompareTo(objs.get(0), objs.get(1),
+                                         objs.get(2), objs.get(3),
+                                         objs.get(4), objs.get(5));
+        return objs;
+    }
+}
@@ -0,0 +1,55 @@
+package org.organicdesign.testUtils.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Times equals() and hashCode() on the objects from an {@link EqualsFixture}.  Throughput gives
+ calls per nanosecond, AverageTime gives nanoseconds per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EqualsBenchmark {
+    @Param
+    public EqualsFixture fixture;
+
+    private Object equiv1;
+    private Object equiv2;
+    private Object different;
+
+    @Setup
+    public void setup() {
+        List<Object> objs = fixture.objects();
+        equiv1 = objs.get(0);
+        equiv2 = objs.get(1);
+        different = objs.get(3);
+    }
+
+    @Benchmark
+    public boolean equalsEquivalent() { return equiv1.equals(equiv2); }
+
+    @Benchmark
+    public boolean equalsDifferent() { return equiv1.equals(different); }
+
+    @Benchmark
+    public int hashCodeEquivalent() { return equiv1.hashCode(); }
+
+    @Benchmark
+    public int hashCodeDifferent() { return different.hashCode(); }
+}
@@ -0,0 +1,51 @@
+package org.organicdesign.testUtils.jmh;
+
+import org.organicdesign.testUtils.EqualsContract;
+import org.organicdesign.testUtils.http.Kv;
+import org.organicdesign.testUtils.string.DiffResult;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ The same four objects you would pass to {@link EqualsContract#equalsDistinctHashCode} or
+ {@link EqualsContract#equalsSameHashCode}: three equivalent (but unique) objects and one different
+ one.  Add a constant here to benchmark another type.  {@link #objects()} runs the contract before
+ handing them out so we never time a broken equals().
+ */
+public enum EqualsFixture {
+    STRING(true, () -> Arrays.asList(new String("Hello World"),
+                                     new String("Hello World"),
+                                     new String("Hello World"),
+                                     new String("Hello Wyrld"))),
+    KV(true, () -> Arrays.asList(new Kv(new String("Accept"), new String("text/html")),
+                                 new Kv(new String("Accept"), new String("text/html")),
+                                 new Kv(new String("Accept"), new String("text/html")),
+                                 new Kv(new String("Accept"), new String("text/plain")))),
+    // Kv hashes are key.hashCode() ^ value.hashCode() so transposing the key and value collides.
+    KV_SAME_HASH(false, () -> Arrays.asList(new Kv(new String("Accept"), new String("text/html")),
+                                            new Kv(new String("Accept"), new String("text/html")),
+                                            new Kv(new String("Accept"), new String("text/html")),
+                                            new Kv(new String("text/html"), new String("Accept")))),
+    DIFF_RESULT(true, () -> Arrays.asList(new DiffResult(new String("od"), new String("an")),
+                                          new DiffResult(new String("od"), new String("an")),
+                                          new DiffResult(new String("od"), new String("an")),
+                                          new DiffResult(new String("nd"), new String("ck"))));
+
+    private final boolean requireDistinctHashes;
+    private final Supplier<List<Object>> supplier;
+
+    EqualsFixture(boolean distinct, Supplier<List<Object>> s) {
+        requireDistinctHashes = distinct;
+        supplier = s;
+    }
+
+    /** Returns fresh, contract-checked objects: equiv1, equiv2, equiv3, different. */
+    public List<Object> objects() {
+        List<Object> objs = supplier.get();
+        EqualsContract.equalsHashCode(objs.get(0), objs.get(1), objs.get(2), objs.get(3),
+                                      requireDistinctHashes);
+        return objs;
+    }
+}
@@ -0,0 +1,146 @@
+package org.organicdesign.testUtils
+
+import java.lang.management.ManagementFactory
+
+/**
+ * Checks that equals(), hashCode(), and compareTo() don't allocate memory once the JIT compiler
+ * has had a chance to warm them up.  Boxing a primitive or building a temporary array in one of
+ * these methods is invisible to a functional test, but shows up as GC pressure when the object
+ * is a key in a busy HashMap or TreeMap.
+ *
+ * Uses the per-thread allocation counter in com.sun.management.ThreadMXBean, which HotSpot and
+ * OpenJ9 both provide.  Measurements are per call, averaged over many calls after warmup (the
+ * least of three rounds).
+ * Allocations that escape analysis eliminates in compiled code do not count (just like in
+ * production).
+ */
+object AllocationContract {
+    private const val DEFAULT_WARMUP = 200_000
+    private const val DEFAULT_ITERATIONS = 100_000
+    private const val ROUNDS = 3
+
+    private val threadBean: com.sun.management.ThreadMXBean? =
+            ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+
+    // Results are folded into here so that the JIT can't throw away the calls we are measuring.
+    @Volatile
+    private var sink: Int = 0
+
+    /**
+     * Total bytes allocated so far by the current thread.  Subtract two readings to find out how
+     * much something allocated.
+     */
+    @JvmStatic
+    fun threadAllocatedBytes(): Long {
+        val bean = threadBean
+        if (bean == null || !bean.isThreadAllocatedMemorySupported) {
+            throw UnsupportedOperationException("This JVM can't measure per-thread allocation")
+        }
+        if (!bean.isThreadAllocatedMemoryEnabled) {
+            bean.isThreadAllocatedMemoryEnabled = true
+        }
+        return bean.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+
+    private inline fun measure(warmup: Int, iterations: Int, body: () -> Int): Double {
+        var acc = 0
+        for (i in 0 until warmup) {
+            acc += body()
+        }
+        // One-time events (like the JIT swapping in compiled code) can allocate a few hundred bytes
+        // in the middle of a round.  Real per-call allocation shows up in every round, so keep the
+        // smallest.
+        var least = Long.MAX_VALUE
+        for (round in 0 until ROUNDS) {
+            // Subtract whatever reading the counter itself allocates.
+            val before = threadAllocatedBytes()
+            val start = threadAllocatedBytes()
+            val overhead = start - before
+            for (i in 0 until iterations) {
+                acc += body()
+            }
+            least = minOf(least, threadAllocatedBytes() - start - overhead)
+        }
+        sink = acc
+        return maxOf(0L, least).toDouble() / iterations
+    }
+
+    /**
+     * Average bytes allocated per call to f after warmup calls.  f should do something with the
+     * result of whatever it calls (like storing it in a field), or the JIT compiler may optimize the
+     * call away entirely.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun bytesPerCall(
+            f: Runnable,
+            warmup: Int = DEFAULT_WARMUP,
+            iterations: Int = DEFAULT_ITERATIONS
+    ): Double = measure(warmup, iterations) { f.run(); 0 }
+
+    /**
+     * Throws an AssertionError if equals() or hashCode() allocates more than maxBytesPerCall on
+     * average.  Pass the same kinds of objects you pass to [EqualsContract.equalsDistinctHashCode].
+     *
+     * @param equiv1 an object
+     * @param equiv2 an object equal to equiv1 (but not the same object)
+     * @param different an object not equal to equiv1
+     * @param maxBytesPerCall the allocation budget for each method.  Zero by default.
+     * @param warmup calls to make before measuring, so the JIT compiles the method.
+     * @param iterations calls to average over in each round of measurement.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun equalsHashCodeAllocation(
+            equiv1: Any,
+            equiv2: Any,
+            different: Any,
+            maxBytesPerCall: Double = 0.0,
+            warmup: Int = DEFAULT_WARMUP,
+            iterations: Int = DEFAULT_ITERATIONS
+    ) {
+        require(equiv1 !== equiv2) { "equiv1 and equiv2 must be different objects" }
+        checkBudget("equals() of equivalent objects", maxBytesPerCall,
+                    measure(warmup, iterations) { if (equiv1.equals(equiv2)) 1 else 0 })
+        checkBudget("equals() of different objects", maxBytesPerCall,
+                    measure(warmup, iterations) { if (equiv1.equals(different)) 1 else 0 })
+        checkBudget("hashCode()", maxBytesPerCall,
+                    measure(warmup, iterations) { equiv1.hashCode() })
+    }
+
+    /**
+     * Throws an AssertionError if compareTo() allocates more than maxBytesPerCall on average.
+     *
+     * @param least1 an object
+     * @param least2 an object that compares as equal to least1 (but not the same object)
+     * @param greatest an object greater than least1
+     * @param maxBytesPerCall the allocation budget.  Zero by default.
+     * @param warmup calls to make before measuring, so the JIT compiles the method.
+     * @param iterations calls to average over in each round of measurement.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun <S : Comparable<S>> compareToAllocation(
+            least1: S,
+            least2: S,
+            greatest: S,
+            maxBytesPerCall: Double = 0.0,
+            warmup: Int = DEFAULT_WARMUP,
+            iterations: Int = DEFAULT_ITERATIONS
+    ) {
+        require(least1 !== least2) { "least1 and least2 must be different objects" }
+        checkBudget("compareTo() of equal objects", maxBytesPerCall,
+                    measure(warmup, iterations) { least1.compareTo(least2) })
+        checkBudget("compareTo() of lesser to greater", maxBytesPerCall,
+                    measure(warmup, iterations) { least1.compareTo(greatest) })
+        checkBudget("compareTo() of greater to lesser", maxBytesPerCall,
+                    measure(warmup, iterations) { greatest.compareTo(least1) })
+    }
+
+    private fun checkBudget(what: String, maxBytesPerCall: Double, bytesPerCall: Double) {
+        if (bytesPerCall > maxBytesPerCall) {
+            throw AssertionError("$what allocated $bytesPerCall bytes per call." +
+                                 "  The budget is $maxBytesPerCall")
+        }
+    }
+}
@@ -16,6 +16,10 @@ package org.organicdesign.testUtils
 import org.organicdesign.testUtils.ComparatorContract.CompToZero
 import org.organicdesign.testUtils.EqualsContract.permutations
 import java.lang.IllegalArgumentException
+import java.util.Random
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.AtomicReference
 
 /**
  * Tests the various properties the Comparable contract is supposed to uphold.  If you think this is
@@ -154,6 +158,142 @@ object ComparableContract {
         pairComp(middle, CompToZero.GTZ, least)
     }
 
+    /**
+     * Statistical version of [testCompareTo] for when six hand-picked objects aren't enough.  Draws
+     * numTriples random triples from the generator, spread across the pool, and checks each one for
+     * reflexivity, antisymmetry, transitivity, and consistency with equals() and hashCode().
+     * Stops at the first counterexample and throws it as an AssertionError on the calling thread.
+     *
+     * Make the generator draw from a small enough domain that it often produces equal objects,
+     * otherwise equality and transitivity of equality hardly get tested.  The generator must be
+     * safe to call from multiple threads (each call gets its own Random).
+     *
+     * @param generator makes a new object using the given source of randomness.
+     * @param numTriples how many random triples to check.
+     * @param seed run the same seed to reproduce a failure.  It's included in the failure message.
+     * @param pool the pool to do the work in.  Defaults to [ForkJoinPool.commonPool].
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun <S : Comparable<S>> testCompareToSampled(
+            generator: (Random) -> S,
+            numTriples: Long = 1_000_000,
+            seed: Long = Random().nextLong(),
+            pool: ForkJoinPool = ForkJoinPool.commonPool()
+    ) {
+        require(numTriples >= 0) { "numTriples must not be negative" }
+        val numChunks = (numTriples + SAMPLE_CHUNK - 1) / SAMPLE_CHUNK
+        val failure = AtomicReference<Counterexample?>(null)
+        pool.invoke(SampleTask(generator, numTriples, seed, 0, numChunks, failure))
+        val ce: Counterexample? = failure.get()
+        if (ce != null) {
+            throw AssertionError("${ce.error.message} (seed=$seed)", ce.error)
+        }
+    }
+
+    /**
+     * The failure from the lowest-numbered triple wins, so that the same seed reports the same
+     * counterexample no matter how the work was scheduled.
+     */
+    private class Counterexample(
+            val index: Long,
+            val error: AssertionError
+    )
+
+    private const val SAMPLE_CHUNK = 4096L
+
+    private class SampleTask<S : Comparable<S>>(
+            private val generator: (Random) -> S,
+            private val numTriples: Long,
+            private val seed: Long,
+            private val lo: Long,
+            private val hi: Long,
+            private val failure: AtomicReference<Counterexample?>
+    ) : RecursiveAction() {
+        override fun compute() {
+            if (hi - lo > 1) {
+                val mid = (lo + hi) ushr 1
+                invokeAll(SampleTask(generator, numTriples, seed, lo, mid, failure),
+                          SampleTask(generator, numTriples, seed, mid, hi, failure))
+                return
+            }
+            // Each chunk gets its own Random so that a given seed always generates the same triples.
+            val rand = Random(seed xor (lo * -0x61c8864680b583ebL))
+            val end = minOf(numTriples, (lo + 1) * SAMPLE_CHUNK)
+            var i = lo * SAMPLE_CHUNK
+            try {
+                while (i < end) {
+                    val found: Counterexample? = failure.get()
+                    if (found != null && found.index < i) {
+                        return
+                    }
+                    checkTriple(generator(rand), generator(rand), generator(rand))
+                    i++
+                }
+            } catch (ae: AssertionError) {
+                val ce = Counterexample(i, ae)
+                while (true) {
+                    val found: Counterexample? = failure.get()
+                    if ((found != null && found.index < i) ||
+                        failure.compareAndSet(found, ce)) {
+                        break
+                    }
+                }
+            }
+        }
+
+        private fun checkTriple(a: S, b: S, c: S) {
+            val items = listOf(a, b, c)
+            val signs = Array(3) { IntArray(3) }
+            for (i in 0..2) {
+                val x = items[i]
+                if (x.compareTo(x) != 0) {
+                    throw AssertionError("a.compareTo(a) must be zero: a=$x")
+                }
+                if (!x.equals(x)) {
+                    throw AssertionError("a.equals(a) must be true: a=$x")
+                }
+                for (j in 0..2) {
+                    signs[i][j] = Integer.signum(x.compareTo(items[j]))
+                }
+            }
+            for (i in 0..2) {
+                for (j in i + 1..2) {
+                    val x = items[i]
+                    val y = items[j]
+                    if (signs[i][j] != -signs[j][i]) {
+                        throw AssertionError("a.compareTo(b) must have the opposite sign of b.compareTo(a):" +
+                                             " a=$x b=$y")
+                    }
+                    if ((signs[i][j] == 0) != x.equals(y)) {
+                        throw AssertionError("a.compareTo(b) == 0 must agree with a.equals(b): a=$x b=$y")
+                    }
+                    if ((signs[i][j] == 0) && (x.hashCode() != y.hashCode())) {
+                        throw AssertionError("a and b compare as equal so must have the same hashCode: a=$x b=$y")
+                    }
+                }
+            }
+            for (i in 0..2) {
+                for (j in 0..2) {
+                    val k = 3 - i - j
+                    if (i == j || k == i || k == j) {
+                        continue
+                    }
+                    // x <= y and y <= z means x <= z (and x == z only if all are equal).
+                    if (signs[i][j] <= 0 && signs[j][k] <= 0) {
+                        val expected = if (signs[i][j] == 0 && signs[j][k] == 0) 0 else -1
+                        if (signs[i][k] != expected) {
+                            throw AssertionError("compareTo() is not transitive: a=${items[i]} b=${items[j]}" +
+                                                 " c=${items[k]} a.compareTo(b)=${signs[i][j]}" +
+                                                 " b.compareTo(c)=${signs[j][k]}" +
+                                                 " but a.compareTo(c)=${signs[i][k]}")
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     private class NamedPair<S : Comparable<S>>(
             val a: S,
             val b: S,
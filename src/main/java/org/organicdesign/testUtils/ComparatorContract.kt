@@ -117,6 +117,176 @@ object ComparatorContract {
         pairComp(middle, CompToZero.GTZ, least, comparator)
     }
 
+    /**
+     * Checks that the comparator imposes a consistent total order on a large sample, the way
+     * TimSort will rely on in production.  Returns one item that doesn't compare as equal to itself,
+     * two items a and b where the sort put a before b but compare(a, b) disagreed, three items that
+     * violate transitivity, or null if no violation was found.  Two items don't necessarily break
+     * antisymmetry: [testTotalOrder] calls compare(b, a) to tell that apart from a comparator that
+     * answered differently than it did during the sort.
+     *
+     * This sorts the sample with a merge sort that trusts the comparator, then binary-searches for
+     * every item in the sorted result, checking that each comparison made along the way agrees with
+     * the sorted order.  That's O(n log n) comparisons instead of the O(n^3) needed to test every
+     * triple, so samples of millions of items take seconds.  It can't prove the order is total, but
+     * intransitive comparators almost always put something where a binary search can't find it.
+     *
+     * @param sample items to check (in any order).  Randomly generated items work well.
+     * @param comparator the comparator to check.
+     */
+    @JvmStatic
+    fun <T> findOrderViolation(
+            sample: List<T>,
+            comparator: Comparator<in T>
+    ): List<T>? {
+        @Suppress("UNCHECKED_CAST")
+        val items: Array<T> = (sample as List<Any?>).toTypedArray() as Array<T>
+        for (item in items) {
+            if (comparator.compare(item, item) != 0) {
+                return listOf(item)
+            }
+        }
+        mergeSort(items, comparator)
+
+        // Assign each position to a run of items which compare as equal.
+        val runs = IntArray(items.size)
+        for (i in 1 until items.size) {
+            val c = comparator.compare(items[i - 1], items[i])
+            if (c > 0) {
+                return listOf(items[i - 1], items[i])
+            }
+            if (Integer.signum(c) != -Integer.signum(comparator.compare(items[i], items[i - 1]))) {
+                return listOf(items[i - 1], items[i])
+            }
+            runs[i] = if (c == 0) runs[i - 1] else runs[i - 1] + 1
+        }
+
+        // Binary search for each item, checking every probe against the sorted order.
+        for (i in items.indices) {
+            var lo = 0
+            var hi = items.size - 1
+            while (lo <= hi) {
+                val mid = (lo + hi) ushr 1
+                val c = Integer.signum(comparator.compare(items[i], items[mid]))
+                val expected = Integer.compare(runs[i], runs[mid])
+                if (c != expected) {
+                    return if (i < mid) {
+                        violatingTriple(items, runs, i, mid, comparator)
+                    } else {
+                        violatingTriple(items, runs, mid, i, comparator)
+                    }
+                }
+                when {
+                    c < 0 -> hi = mid - 1
+                    c > 0 -> lo = mid + 1
+                    else  -> break
+                }
+            }
+        }
+        return null
+    }
+
+    /**
+     * Throws an AssertionError describing the violation if [findOrderViolation] finds one.
+     * See that method for details.
+     */
+    @JvmStatic
+    fun <T> testTotalOrder(
+            sample: List<T>,
+            comparator: Comparator<in T>
+    ) {
+        val violation: List<T> = findOrderViolation(sample, comparator) ?: return
+        when (violation.size) {
+            1 -> throw AssertionError("comparator.compare(item, item) must return zero: ${violation[0]}")
+            2 -> {
+                val (a, b) = violation
+                val ab = comparator.compare(a, b)
+                val ba = comparator.compare(b, a)
+                if (Integer.signum(ab) != -Integer.signum(ba)) {
+                    throw AssertionError("comparator.compare(a, b) must have the opposite sign of" +
+                                         " comparator.compare(b, a): a=$a b=$b" +
+                                         " compare(a, b)=$ab compare(b, a)=$ba")
+                }
+                throw AssertionError("Comparator is not a consistent order: a=$a b=$b" +
+                                     " compare(a, b)=$ab compare(b, a)=$ba" +
+                                     " but earlier comparisons sorted a before b")
+            }
+            else -> {
+                val (a, b, c) = violation
+                throw AssertionError("Comparator is not transitive: a=$a b=$b c=$c" +
+                                     " compare(a, b)=${comparator.compare(a, b)}" +
+                                     " compare(b, c)=${comparator.compare(b, c)}" +
+                                     " but compare(a, c)=${comparator.compare(a, c)}")
+            }
+        }
+    }
+
+    /**
+     * The items from p to q are sorted and each adjacent pair was checked, but items[p] compares
+     * inconsistently with items[q].  Narrow that down to adjacent k, k+1 where items[p] compares
+     * as expected to items[k] but not to items[k+1].
+     */
+    private fun <T> violatingTriple(
+            items: Array<T>,
+            runs: IntArray,
+            p: Int,
+            q: Int,
+            comparator: Comparator<in T>
+    ): List<T> {
+        val x = items[p]
+        val y = items[q]
+        if (Integer.signum(comparator.compare(x, y)) == Integer.compare(runs[p], runs[q])) {
+            // compare(x, y) is right but compare(y, x) wasn't.
+            return listOf(x, y)
+        }
+        var good = p
+        var bad = q
+        while (bad - good > 1) {
+            val mid = (good + bad) ushr 1
+            if (Integer.signum(comparator.compare(x, items[mid])) == Integer.compare(runs[p], runs[mid])) {
+                good = mid
+            } else {
+                bad = mid
+            }
+        }
+        return listOf(x, items[good], items[bad])
+    }
+
+    /** A plain merge sort.  Unlike TimSort, it won't throw if the comparator is broken. */
+    private fun <T> mergeSort(items: Array<T>, comparator: Comparator<in T>) {
+        val tmp: Array<T> = items.copyOf()
+        var width = 1
+        var src = items
+        var dest = tmp
+        while (width < items.size) {
+            var lo = 0
+            while (lo < items.size) {
+                val mid = minOf(lo + width, items.size)
+                val hi = minOf(lo + (width shl 1), items.size)
+                var i = lo
+                var j = mid
+                var k = lo
+                while (i < mid && j < hi) {
+                    dest[k++] = if (comparator.compare(src[j], src[i]) < 0) src[j++] else src[i++]
+                }
+                while (i < mid) {
+                    dest[k++] = src[i++]
+                }
+                while (j < hi) {
+                    dest[k++] = src[j++]
+                }
+                lo = hi
+            }
+            val swap = src
+            src = dest
+            dest = swap
+            width = width shl 1
+        }
+        if (src !== items) {
+            System.arraycopy(src, 0, items, 0, items.size)
+        }
+    }
+
     internal enum class CompToZero {
         LTZ {
             override fun english(): String = "less than"
@@ -0,0 +1,130 @@
+package org.organicdesign.testUtils
+
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Calls equals(), hashCode(), and compareTo() on brand-new objects from many threads at once and
+ * checks that every thread gets the same answers as a single thread does.  EqualsContract and
+ * ComparableContract only ever use one thread, so they can't find a data race in a lazily cached
+ * hashCode (or compareTo key), which then corrupts a shared ConcurrentHashMap under load.
+ *
+ * Each round asks the factory for fresh objects (so no cache is warm), has all the threads wait
+ * at a barrier, then lets them all make the same calls in a different order.  Races are
+ * timing-dependent, so more rounds and more threads than cores find more of them.
+ */
+object ConcurrentContract {
+    private val DEFAULT_THREADS = maxOf(4, Runtime.getRuntime().availableProcessors())
+    private const val DEFAULT_ROUNDS = 1000
+
+    /**
+     * Checks that hashCode() and equals() give the same answers from many threads at once as they
+     * do from one thread.
+     *
+     * @param factory makes a new list of objects each round, for instance the four you would pass
+     * to [EqualsContract.equalsDistinctHashCode].  Each call must return new objects.
+     * @param threads number of threads calling methods at the same time.
+     * @param rounds number of times to get new objects and race them.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun equalsHashCodeConcurrently(
+            factory: () -> List<Any>,
+            threads: Int = DEFAULT_THREADS,
+            rounds: Int = DEFAULT_ROUNDS
+    ) {
+        val size = factory().size
+        val calls: MutableList<Pair<String, (List<Any>) -> Int>> = mutableListOf()
+        for (i in 0 until size) {
+            calls.add("item $i hashCode()" to { items -> items[i].hashCode() })
+        }
+        for (i in 0 until size) {
+            for (j in 0 until size) {
+                if (i != j) {
+                    calls.add("item $i equals(item $j)" to { items -> if (items[i].equals(items[j])) 1 else 0 })
+                }
+            }
+        }
+        stress(factory, threads, rounds, calls)
+    }
+
+    /**
+     * Checks that compareTo(), hashCode(), and equals() give the same answers from many threads at
+     * once as they do from one thread.
+     *
+     * @param factory makes a new list of objects each round, for instance the six you would pass
+     * to [ComparableContract.testCompareTo].  Each call must return new objects.
+     * @param threads number of threads calling methods at the same time.
+     * @param rounds number of times to get new objects and race them.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun <S : Comparable<S>> compareToConcurrently(
+            factory: () -> List<S>,
+            threads: Int = DEFAULT_THREADS,
+            rounds: Int = DEFAULT_ROUNDS
+    ) {
+        val size = factory().size
+        val calls: MutableList<Pair<String, (List<S>) -> Int>> = mutableListOf()
+        for (i in 0 until size) {
+            calls.add("item $i hashCode()" to { items -> items[i].hashCode() })
+        }
+        for (i in 0 until size) {
+            for (j in 0 until size) {
+                if (i != j) {
+                    calls.add("item $i compareTo(item $j)" to { items -> Integer.signum(items[i].compareTo(items[j])) })
+                    calls.add("item $i equals(item $j)" to { items -> if (items[i].equals(items[j])) 1 else 0 })
+                }
+            }
+        }
+        stress(factory, threads, rounds, calls)
+    }
+
+    private fun <T> stress(
+            factory: () -> List<T>,
+            threads: Int,
+            rounds: Int,
+            calls: List<Pair<String, (List<T>) -> Int>>
+    ) {
+        require(threads > 1) { "It takes at least two threads to have a race" }
+        val pool = Executors.newFixedThreadPool(threads)
+        try {
+            for (round in 0 until rounds) {
+                val reference: List<T> = factory()
+                val expected: IntArray = IntArray(calls.size) { calls[it].second(reference) }
+                val items: List<T> = factory()
+                val barrier = CyclicBarrier(threads)
+                val futures: List<Future<IntArray>> = (0 until threads).map { t ->
+                    pool.submit<IntArray> {
+                        val results = IntArray(calls.size)
+                        barrier.await()
+                        // Each thread starts on a different call so that they race to be first.
+                        val offset = (t * calls.size) / threads
+                        for (k in calls.indices) {
+                            val c = (k + offset) % calls.size
+                            results[c] = calls[c].second(items)
+                        }
+                        results
+                    }
+                }
+                for (t in futures.indices) {
+                    val results: IntArray = try {
+                        futures[t].get()
+                    } catch (ee: ExecutionException) {
+                        throw AssertionError("Thread $t threw an exception in round $round: ${ee.cause}", ee.cause)
+                    }
+                    for (c in calls.indices) {
+                        if (results[c] != expected[c]) {
+                            throw AssertionError("${calls[c].first} returned ${results[c]} on thread $t" +
+                                                 " in round $round, but ${expected[c]} on a single thread")
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow()
+        }
+    }
+}
@@ -13,6 +13,10 @@
 // limitations under the License.
 package org.organicdesign.testUtils
 
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.AtomicReference
+
 /**
  * Tests Reflexive, Symmetric, Transitive, Consistent, and non-nullity properties of the equals()
  * contract.  If you think this is confusing, realize that there is no way to implement a
@@ -164,4 +168,111 @@ object EqualsContract {
     ) {
         equalsHashCode(equiv1, equiv2, equiv3, different, true)
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests Reflexive, Symmetric, Consistent, and non-nullity properties of the equals() contract
+     * for a large number of equivalence classes at once, spreading the pairwise work across a
+     * [ForkJoinPool].  Use this instead of calling [equalsHashCode] thousands of times when you have
+     * generated a whole domain model worth of test objects.
+     *
+     * Every object within an inner list must equal (and have the same hashCode as) every other
+     * object in that list.  Every object must be unequal to every object in every other list.
+     * Hash collisions between lists are allowed.  Objects must all be distinct (having different
+     * memory locations) within a list, or it's not much of a test.
+     *
+     * The first failure found is thrown as an [AssertionError] on the calling thread, and the
+     * remaining work is abandoned.
+     *
+     * @param equivClasses a list of equivalence classes, each a non-empty list of mutually equal objects.
+     * @param pool the pool to do the work in.  Defaults to [ForkJoinPool.commonPool].
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun equivalenceClasses(
+            equivClasses: List<List<Any>>,
+            pool: ForkJoinPool = ForkJoinPool.commonPool()
+    ) {
+        for (i in equivClasses.indices) {
+            val equivs = equivClasses[i]
+            require(equivs.isNotEmpty()) { "Equivalence class $i is empty" }
+            permutations(equivs) { a: Any, b: Any ->
+                require(a !== b) { "Equivalence class $i contains the same object twice: $a" }
+            }
+        }
+        // Precompute hashCodes once per object so that the cross-class checks don't call hashCode()
+        // millions of times.  Consistency is still checked on every object.
+        val hashes: List<IntArray> = equivClasses.map { equivs -> IntArray(equivs.size) { equivs[it].hashCode() } }
+        val failure = AtomicReference<AssertionError?>(null)
+        pool.invoke(EquivClassTask(equivClasses, hashes, 0, equivClasses.size, failure))
+        val ae: AssertionError? = failure.get()
+        if (ae != null) {
+            throw ae
+        }
+    }
+
+    /** Checks rows lo until hi of the (triangular) matrix of equivalence class pairs. */
+    private class EquivClassTask(
+            private val equivClasses: List<List<Any>>,
+            private val hashes: List<IntArray>,
+            private val lo: Int,
+            private val hi: Int,
+            private val failure: AtomicReference<AssertionError?>
+    ) : RecursiveAction() {
+        override fun compute() {
+            if (hi - lo > 1) {
+                val mid = (lo + hi) ushr 1
+                invokeAll(EquivClassTask(equivClasses, hashes, lo, mid, failure),
+                          EquivClassTask(equivClasses, hashes, mid, hi, failure))
+                return
+            }
+            try {
+                checkRow(lo)
+            } catch (ae: AssertionError) {
+                failure.compareAndSet(null, ae)
+            }
+        }
+
+        private fun checkRow(i: Int) {
+            val equivs = equivClasses[i]
+            val equivHashes = hashes[i]
+            for (k in equivs.indices) {
+                val item = equivs[k]
+                if (item.hashCode() != equivHashes[k]) {
+                    throw AssertionError("Item $k of class $i must have the same hashCode as itself: $item")
+                }
+                if (!item.equals(item)) {
+                    throw AssertionError("Item $k of class $i must be equal to itself: $item")
+                }
+                if (item.equals(null)) {
+                    throw AssertionError("Item $k of class $i cannot allow itself to equal null: $item")
+                }
+            }
+            permutations(equivs.indices.toList()) { a: Int, b: Int ->
+                if (equivHashes[a] != equivHashes[b]) {
+                    throw AssertionError("Found an unequal hashCode in class $i: a=${equivs[a]} b=${equivs[b]}")
+                }
+                if (!equivs[a].equals(equivs[b])) {
+                    throw AssertionError("Failed equals in class $i: a=${equivs[a]} b=${equivs[b]}")
+                }
+                if (!equivs[b].equals(equivs[a])) {
+                    throw AssertionError("Failed reflexive equals in class $i: a=${equivs[a]} b=${equivs[b]}")
+                }
+            }
+            // Every member against every member of each later class, in both directions.  Members
+            // of a class equal each other, but that only makes one pair enough if equals is
+            // transitive, which is part of what's being checked.
+            for (j in i + 1 until equivClasses.size) {
+                if (failure.get() != null) {
+                    return
+                }
+                for (item in equivs) {
+                    for (other in equivClasses[j]) {
+                        if (item.equals(other) || other.equals(item)) {
+                            throw AssertionError("Classes $i and $j must not be equal: $item vs. $other")
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
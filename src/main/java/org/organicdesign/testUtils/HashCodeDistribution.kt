@@ -0,0 +1,180 @@
+package org.organicdesign.testUtils
+
+import org.organicdesign.indented.IndentedStringable
+import org.organicdesign.indented.StringUtils.classFieldsK
+
+/**
+ * Checks how well hashCode() spreads a sample of objects.  EqualsContract makes sure equal objects
+ * have equal hashCodes, but a hashCode() of `return 1` passes that contract while turning every
+ * HashMap into a linked list.  This predicts how a HashMap or HashSet holding the sample would
+ * actually be laid out.
+ *
+ * Pass a large sample of *unequal* objects, ideally built the way your production code builds
+ * them.  Equal objects would collapse to one key in a real map, but are counted as collisions
+ * here.
+ */
+object HashCodeDistribution {
+    // These mirror the private constants in java.util.HashMap
+    private const val DEFAULT_INITIAL_CAPACITY = 16
+    private const val LOAD_FACTOR = 0.75
+    private const val TREEIFY_THRESHOLD = 8
+    private const val MIN_TREEIFY_CAPACITY = 64
+
+    /** The same function java.util.HashMap uses to fold the high bits of a hashCode into the low ones. */
+    @JvmStatic
+    fun spread(h: Int): Int = h xor (h ushr 16)
+
+    /**
+     * The table size a HashMap ends up with after putting this many distinct keys in a
+     * default-constructed map.
+     */
+    @JvmStatic
+    fun tableSizeFor(numKeys: Int): Int {
+        var cap = DEFAULT_INITIAL_CAPACITY
+        while (numKeys > cap * LOAD_FACTOR && cap < (1 shl 30)) {
+            cap = cap shl 1
+        }
+        return cap
+    }
+
+    /** Measures the hashCode distribution of the given sample without judging it. */
+    @JvmStatic
+    fun analyze(items: Collection<Any>): Report {
+        val hashes = IntArray(items.size)
+        var i = 0
+        for (item in items) {
+            hashes[i++] = item.hashCode()
+        }
+        return analyzeHashes(hashes)
+    }
+
+    /** Measures the distribution of already-computed hashCodes. */
+    @JvmStatic
+    fun analyzeHashes(hashes: IntArray): Report {
+        val n = hashes.size
+
+        val sorted = hashes.copyOf()
+        sorted.sort()
+        var distinct = if (n == 0) 0 else 1
+        for (i in 1 until n) {
+            if (sorted[i] != sorted[i - 1]) {
+                distinct++
+            }
+        }
+
+        val tableSize = tableSizeFor(n)
+        val mask = tableSize - 1
+        val chains = IntArray(tableSize)
+        for (h in hashes) {
+            chains[spread(h) and mask]++
+        }
+        var occupied = 0
+        var longest = 0
+        var treeified = 0
+        for (len in chains) {
+            if (len > 0) {
+                occupied++
+            }
+            if (len > longest) {
+                longest = len
+            }
+            // HashMap treeifies a bin when it adds a node to a chain that's already TREEIFY_THRESHOLD long
+            if (len > TREEIFY_THRESHOLD && tableSize >= MIN_TREEIFY_CAPACITY) {
+                treeified++
+            }
+        }
+        // For uniformly random hashes, each bucket is empty with probability (1 - 1/m)^n
+        val expectedOccupied = tableSize * (1.0 - Math.pow(1.0 - 1.0 / tableSize, n.toDouble()))
+
+        return Report(sampleSize = n,
+                      distinctHashes = distinct,
+                      tableSize = tableSize,
+                      occupiedBuckets = occupied,
+                      expectedOccupiedBuckets = expectedOccupied,
+                      longestChain = longest,
+                      treeifiedBuckets = treeified)
+    }
+
+    /**
+     * Throws an AssertionError if the hashCodes of the given sample would noticeably degrade
+     * HashMap lookups:
+     *  - any bucket long enough for HashMap to convert it to a tree
+     *  - more than maxCollisionRate of the sample sharing a hashCode with another item
+     *  - fewer than minOccupancyRatio of the buckets used that uniformly random hashCodes would use
+     *
+     * @param items a large sample of unequal objects
+     * @param maxCollisionRate fraction of items allowed to share a hashCode with an earlier item.
+     * 32-bit random hashes of a million items collide about 0.01% of the time.
+     * @param minOccupancyRatio fraction of the expected number of occupied buckets that must actually
+     * be occupied.
+     * @return the report, in case you want to print or check it further.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun assertWellDistributed(
+            items: Collection<Any>,
+            maxCollisionRate: Double = 0.01,
+            minOccupancyRatio: Double = 0.5
+    ): Report {
+        val report = analyze(items)
+        if (report.treeifiedBuckets > 0) {
+            throw AssertionError("${report.treeifiedBuckets} HashMap buckets would be converted to trees." +
+                                 "  Longest chain: ${report.longestChain}\n$report")
+        }
+        if (report.collisionRate() > maxCollisionRate) {
+            throw AssertionError("hashCode collision rate ${report.collisionRate()} exceeds $maxCollisionRate\n$report")
+        }
+        if (report.occupiedBuckets < report.expectedOccupiedBuckets * minOccupancyRatio) {
+            throw AssertionError("Only ${report.occupiedBuckets} of ${report.tableSize} HashMap buckets used." +
+                                 "  Random hashCodes would use about ${report.expectedOccupiedBuckets.toInt()}\n$report")
+        }
+        return report
+    }
+
+    /**
+     * What a default HashMap would look like holding the sample.
+     *
+     * @param sampleSize number of objects analyzed
+     * @param distinctHashes number of distinct hashCode() values
+     * @param tableSize number of buckets in a HashMap holding sampleSize keys
+     * @param occupiedBuckets number of buckets with at least one key after HashMap's spread function
+     * @param expectedOccupiedBuckets how many buckets uniformly random hashCodes would occupy
+     * @param longestChain most keys in any one bucket
+     * @param treeifiedBuckets number of buckets HashMap would convert to red-black trees
+     */
+    data class Report(
+            val sampleSize: Int,
+            val distinctHashes: Int,
+            val tableSize: Int,
+            val occupiedBuckets: Int,
+            val expectedOccupiedBuckets: Double,
+            val longestChain: Int,
+            val treeifiedBuckets: Int
+    ) : IndentedStringable {
+
+        /** Fraction of the sample that shares a hashCode with some other item. */
+        fun collisionRate(): Double =
+                if (sampleSize == 0) {
+                    0.0
+                } else {
+                    (sampleSize - distinctHashes).toDouble() / sampleSize
+                }
+
+        /** Fraction of the buckets holding at least one key. */
+        fun occupancy(): Double = occupiedBuckets.toDouble() / tableSize
+
+        override fun indentedStr(indent: Int, singleLine: Boolean): String =
+            classFieldsK(indent, "HashCodeDistribution.Report",
+                         listOf("sampleSize" to sampleSize,
+                                "distinctHashes" to distinctHashes,
+                                "collisionRate" to collisionRate(),
+                                "tableSize" to tableSize,
+                                "occupiedBuckets" to occupiedBuckets,
+                                "expectedOccupiedBuckets" to expectedOccupiedBuckets.toInt(),
+                                "longestChain" to longestChain,
+                                "treeifiedBuckets" to treeifiedBuckets),
+                         singleLine)
+
+        override fun toString(): String = indentedStr(0)
+    }
+}
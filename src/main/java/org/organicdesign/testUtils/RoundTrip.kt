@@ -0,0 +1,42 @@
+package org.organicdesign.testUtils
+
+import org.organicdesign.indented.IndentedStringable
+import org.organicdesign.indented.StringUtils.classFieldsK
+
+/**
+ * What it cost to serialize and deserialize something with [Serialization.roundTrip] or
+ * [Serialization.roundTripAll].  Times and allocation are averages over the measured repetitions.
+ *
+ * @param result whatever came back from deserializing (from the last repetition)
+ * @param count number of objects written to the stream
+ * @param serializedBytes size of the serialized stream
+ * @param serializeNanos time to write the objects to the stream
+ * @param deserializeNanos time to read the objects back from the stream
+ * @param allocatedBytes bytes allocated by the current thread for one whole round trip, or -1 if
+ * the JVM can't measure that
+ */
+data class RoundTrip<T>(
+        val result: T,
+        val count: Int,
+        val serializedBytes: Int,
+        val serializeNanos: Long,
+        val deserializeNanos: Long,
+        val allocatedBytes: Long
+) : IndentedStringable {
+
+    fun bytesPerObject(): Double = if (count == 0) 0.0 else serializedBytes.toDouble() / count
+
+    fun roundTripNanos(): Long = serializeNanos + deserializeNanos
+
+    // Leaves out the result which could be huge.
+    override fun indentedStr(indent: Int, singleLine: Boolean): String =
+        classFieldsK(indent, "RoundTrip",
+                     listOf("count" to count,
+                            "serializedBytes" to serializedBytes,
+                            "serializeNanos" to serializeNanos,
+                            "deserializeNanos" to deserializeNanos,
+                            "allocatedBytes" to allocatedBytes),
+                     singleLine)
+
+    override fun toString(): String = indentedStr(0)
+}
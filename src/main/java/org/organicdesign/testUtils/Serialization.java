@@ -6,6 +6,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class Serialization {
     /**
@@ -43,4 +46,117 @@ public class Serialization {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     Serializes and deserializes the passed object like {@link #serializeDeserialize(Object)}, but
+     also reports the serialized size in bytes, how long serializing and deserializing took, and
+     how many bytes the round trip allocated.  A single round trip includes class loading and
+     interpreted code, so use {@link #roundTrip(Object, int, int)} with some warmup for timings
+     you can compare.
+     @param obj the item to serialize and deserialize
+     @return the deserialized object with the stats
+     */
+    public static <T> RoundTrip<T> roundTrip(@NotNull T obj) {
+        return roundTrip(obj, 0, 1);
+    }
+
+    /**
+     Like {@link #roundTrip(Object)}, but makes warmup round trips first, then averages the times
+     and allocation over the given number of repetitions.
+     @param obj the item to serialize and deserialize
+     @param warmup number of unmeasured round trips to make first
+     @param repetitions number of measured round trips to average over
+     @return the deserialized object (from the last repetition) with the stats
+     */
+    public static <T> RoundTrip<T> roundTrip(@NotNull T obj, int warmup, int repetitions) {
+        RoundTrip<List<T>> rt = roundTripAll(Collections.singletonList(obj), warmup, repetitions);
+        return new RoundTrip<>(rt.getResult().get(0), rt.getCount(), rt.getSerializedBytes(),
+                               rt.getSerializeNanos(), rt.getDeserializeNanos(), rt.getAllocatedBytes());
+    }
+
+    /**
+     Writes all the given objects through a single ObjectOutputStream, then reads them all back.
+     This is how a batch of objects goes over the wire or into a cache, and it's cheaper per
+     object than separate streams because class descriptors (and any shared objects) are only
+     written once.
+     @param objs the items to serialize and deserialize
+     @return the deserialized objects in the same order, with the stats for the whole batch
+     */
+    public static <T> RoundTrip<List<T>> roundTripAll(@NotNull List<T> objs) {
+        return roundTripAll(objs, 0, 1);
+    }
+
+    /**
+     Like {@link #roundTripAll(List)}, but makes warmup round trips first, then averages the times
+     and allocation over the given number of repetitions.
+     @param objs the items to serialize and deserialize
+     @param warmup number of unmeasured round trips to make first
+     @param repetitions number of measured round trips to average over
+     @return the deserialized objects (from the last repetition) with the stats
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RoundTrip<List<T>> roundTripAll(
+            @NotNull List<T> objs,
+            int warmup,
+            int repetitions
+    ) {
+        if (warmup < 0 || repetitions < 1) {
+            throw new IllegalArgumentException("warmup must be >= 0 and repetitions must be >= 1");
+        }
+        long serializeNanos = 0;
+        long deserializeNanos = 0;
+        long allocated = 0;
+        boolean allocationKnown = true;
+        int size = 0;
+        List<T> result = null;
+        try {
+            for (int i = 0; i < warmup + repetitions; i++) {
+                long alloc0 = allocatedBytes();
+                long t0 = System.nanoTime();
+
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(baos);
+                for (T obj : objs) {
+                    oos.writeObject(obj);
+                }
+                oos.close();
+                final byte[] data = baos.toByteArray();
+
+                long t1 = System.nanoTime();
+
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+                List<T> read = new ArrayList<>(objs.size());
+                for (int j = 0; j < objs.size(); j++) {
+                    read.add((T) ois.readObject());
+                }
+
+                long t2 = System.nanoTime();
+                long alloc1 = allocatedBytes();
+
+                if (i >= warmup) {
+                    serializeNanos += t1 - t0;
+                    deserializeNanos += t2 - t1;
+                    allocated += alloc1 - alloc0;
+                    allocationKnown = allocationKnown && (alloc0 >= 0);
+                }
+                size = data.length;
+                result = read;
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        return new RoundTrip<>(result, objs.size(), size,
+                               serializeNanos / repetitions,
+                               deserializeNanos / repetitions,
+                               allocationKnown ? allocated / repetitions : -1);
+    }
+
+    /** Bytes allocated by this thread so far, or -1 if the JVM can't tell us. */
+    private static long allocatedBytes() {
+        try {
+            return AllocationContract.threadAllocatedBytes();
+        } catch (UnsupportedOperationException ignore) {
+            return -1;
+        }
+    }
 }
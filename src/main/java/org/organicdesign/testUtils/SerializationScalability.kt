@@ -0,0 +1,132 @@
+package org.organicdesign.testUtils
+
+import org.organicdesign.indented.IndentedStringable
+import org.organicdesign.indented.StringUtils.fieldsOnOneLineK
+import java.lang.management.ManagementFactory
+import java.lang.management.ThreadMXBean
+import kotlin.math.ln
+
+/**
+ * Default Java serialization recurses through the object graph, so a long linked structure
+ * (persistent list, tree, chain of listeners) can overflow the stack, and some custom
+ * writeObject()/readObject() methods go quadratic.  This builds graphs of increasing size from
+ * your factory, round-trips each one through [Serialization.roundTrip], and fails if any of them
+ * overflows the stack or if time or size grows faster than the allowed exponent.
+ *
+ * Growth is measured as the slope on a log-log plot between the middle and the largest size:
+ * about 1.0 for linear, 2.0 for quadratic.  The smaller sizes are mostly warmup and fixed costs.
+ * The default limit of 1.5 is halfway between the two, which leaves room for noise either way:
+ * linear graphs (and n log n ones) measure about 0.8 to 1.1, and quadratic ones about 1.8 to 2.3.
+ */
+object SerializationScalability {
+    /** 1,000 to 128,000 elements, doubling each time. */
+    @JvmField
+    val DEFAULT_SIZES: IntArray = IntArray(8) { 1000 shl it }
+
+    /**
+     * Round-trips graphs of each size and checks that they scale.
+     *
+     * @param factory builds an object graph with (roughly) the given number of elements.
+     * @param sizes graph sizes to try, smallest to largest.
+     * @param maxTimeExponent fail if round-trip time grows faster than size to this power.  The default
+     * of 1.5 passes linear growth and catches quadratic.
+     * @param maxBytesExponent fail if serialized size grows faster than size to this power.
+     * @return the measurement for each size.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun assertScalable(
+            factory: (Int) -> Any,
+            sizes: IntArray = DEFAULT_SIZES,
+            maxTimeExponent: Double = 1.5,
+            maxBytesExponent: Double = 1.1
+    ): List<Measurement> {
+        require(sizes.size >= 2) { "Need at least two sizes to measure growth" }
+        for (i in 1 until sizes.size) {
+            require(sizes[i] > sizes[i - 1]) { "Sizes must be in increasing order" }
+        }
+        // Round-trip every size once before measuring any, so that the JIT has finished compiling
+        // by the time the middle size is measured.  On a single busy core, compiled code can
+        // show up several sizes later than the first round trip that triggered it.
+        val graphs: MutableList<Any> = mutableListOf()
+        for (size in sizes) {
+            val graph = factory(size)
+            try {
+                Serialization.roundTrip(graph)
+            } catch (soe: StackOverflowError) {
+                throw AssertionError("Serializing a graph of size $size overflowed the stack." +
+                                     "  Consider a custom writeObject()/readObject() or a serialization proxy" +
+                                     " that writes the elements in a loop.  Sizes that worked: " +
+                                     sizes.take(graphs.size))
+            }
+            graphs.add(graph)
+        }
+
+        // The fastest of a few round trips, in CPU time of this thread.  On a busy machine, GC
+        // and JIT compiler threads can take the CPU away for a whole round trip.
+        val measurements: MutableList<Measurement> = mutableListOf()
+        for ((i, graph) in graphs.withIndex()) {
+            var bytes = 0
+            var nanos = Long.MAX_VALUE
+            for (rep in 0 until REPETITIONS) {
+                val start = cpuNanos()
+                bytes = Serialization.roundTrip(graph).serializedBytes
+                nanos = minOf(nanos, cpuNanos() - start)
+            }
+            measurements.add(Measurement(sizes[i], bytes, nanos))
+        }
+
+        val mid = measurements[(measurements.size - 1) / 2]
+        val last = measurements.last()
+        val timeExp = exponent(mid.size, mid.nanos.toDouble(), last.size, last.nanos.toDouble())
+        val bytesExp = exponent(mid.size, mid.bytes.toDouble(), last.size, last.bytes.toDouble())
+        if (bytesExp > maxBytesExponent) {
+            throw AssertionError("Serialized size grows like size^${"%.2f".format(bytesExp)}," +
+                                 " more than size^$maxBytesExponent: $measurements")
+        }
+        if (timeExp > maxTimeExponent) {
+            throw AssertionError("Round-trip time grows like size^${"%.2f".format(timeExp)}," +
+                                 " more than size^$maxTimeExponent: $measurements")
+        }
+        return measurements
+    }
+
+    private const val REPETITIONS = 3
+
+    private val threadBean: ThreadMXBean = ManagementFactory.getThreadMXBean()
+
+    /** CPU time used by this thread, or wall clock time if this JVM can't measure that. */
+    private fun cpuNanos(): Long {
+        if (threadBean.isCurrentThreadCpuTimeSupported) {
+            if (!threadBean.isThreadCpuTimeEnabled) {
+                threadBean.isThreadCpuTimeEnabled = true
+            }
+            return threadBean.currentThreadCpuTime
+        }
+        return System.nanoTime()
+    }
+
+    private fun exponent(size1: Int, y1: Double, size2: Int, y2: Double): Double =
+            ln(maxOf(y2, 1.0) / maxOf(y1, 1.0)) / ln(size2.toDouble() / size1)
+
+    /**
+     * One round trip.
+     *
+     * @param size the number passed to the factory
+     * @param bytes serialized size
+     * @param nanos fastest round trip time, in CPU time of the calling thread where the JVM supports it
+     */
+    data class Measurement(
+            val size: Int,
+            val bytes: Int,
+            val nanos: Long
+    ) : IndentedStringable {
+        override fun indentedStr(indent: Int, singleLine: Boolean): String =
+            fieldsOnOneLineK(indent, "Measurement",
+                             listOf("size" to size,
+                                    "bytes" to bytes,
+                                    "nanos" to nanos))
+
+        override fun toString(): String = indentedStr(0)
+    }
+}
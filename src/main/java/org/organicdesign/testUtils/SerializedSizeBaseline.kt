@@ -0,0 +1,107 @@
+package org.organicdesign.testUtils
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.Properties
+import java.util.SortedMap
+
+/**
+ * Catches accidental growth in the serialized form of your objects: a field someone forgot to
+ * make transient, or an extra object dragged into the graph.  Records the serialized size of
+ * some representative objects in a baseline file (usually checked in under src/test/resources)
+ * and fails when a later run finds any of them has grown by more than a tolerance.
+ *
+ * Objects with no size in the baseline file are recorded there and pass.  To accept new sizes
+ * after an intentional change, delete their lines from the file, or run the tests once with the
+ * system property `testUtils.updateBaselines=true`.
+ */
+object SerializedSizeBaseline {
+    /** Set this system property to "true" to overwrite the recorded sizes instead of checking them. */
+    const val UPDATE_PROPERTY = "testUtils.updateBaselines"
+
+    private val NAME_REGEX = Regex("[A-Za-z0-9_.-]+")
+
+    /**
+     * Serializes each sample and compares its size with the one in the baseline file.
+     *
+     * @param baselineFile a properties file of name=bytes.  It's created if it doesn't exist.
+     * Tests usually run in the project directory, so a path like
+     * `src/test/resources/serializedSizes.properties` works.
+     * @param samples representative objects by name.  Names may only contain letters, digits,
+     * underscores, dots, and dashes.
+     * @param tolerance fraction an object can grow before failing.  0.1 allows 10% growth.
+     * @return the current sizes by name.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun assertSizes(
+            baselineFile: Path,
+            samples: Map<String, Any>,
+            tolerance: Double = 0.1
+    ): Map<String, Int> {
+        require(tolerance >= 0.0) { "tolerance must not be negative" }
+        val current: SortedMap<String, Int> = sortedMapOf()
+        for ((name, obj) in samples) {
+            require(NAME_REGEX.matches(name)) { "Invalid baseline name: $name" }
+            current[name] = Serialization.roundTrip(obj).serializedBytes
+        }
+
+        val baseline: SortedMap<String, Int> = readBaseline(baselineFile)
+        if (java.lang.Boolean.getBoolean(UPDATE_PROPERTY)) {
+            baseline.putAll(current)
+            writeBaseline(baselineFile, baseline)
+            return current
+        }
+
+        val problems: MutableList<String> = mutableListOf()
+        var added = false
+        for ((name, size) in current) {
+            val recorded: Int? = baseline[name]
+            if (recorded == null) {
+                baseline[name] = size
+                added = true
+            } else if (size > recorded * (1.0 + tolerance)) {
+                val pct = ((size - recorded) * 100L) / maxOf(1, recorded)
+                problems.add("$name grew from $recorded to $size bytes (+$pct%)")
+            }
+        }
+        if (added) {
+            writeBaseline(baselineFile, baseline)
+        }
+        if (problems.isNotEmpty()) {
+            throw AssertionError("Serialized size grew more than ${(tolerance * 100).toInt()}% over the" +
+                                 " baseline in $baselineFile:\n  " + problems.joinToString("\n  ") +
+                                 "\nIf that's intentional, delete those lines from the baseline file" +
+                                 " or run with -D$UPDATE_PROPERTY=true")
+        }
+        return current
+    }
+
+    private fun readBaseline(file: Path): SortedMap<String, Int> {
+        val ret: SortedMap<String, Int> = sortedMapOf()
+        if (Files.exists(file)) {
+            val props = Properties()
+            Files.newBufferedReader(file, StandardCharsets.UTF_8).use { props.load(it) }
+            for (name in props.stringPropertyNames()) {
+                ret[name] = props.getProperty(name).trim().toInt()
+            }
+        }
+        return ret
+    }
+
+    // Written by hand instead of with Properties.store() so the lines are sorted and there's no
+    // timestamp.  That keeps diffs of the checked-in file small.
+    private fun writeBaseline(file: Path, sizes: SortedMap<String, Int>) {
+        val parent: Path? = file.toAbsolutePath().parent
+        if (parent != null) {
+            Files.createDirectories(parent)
+        }
+        val sB = StringBuilder("# Serialized sizes in bytes, recorded by SerializedSizeBaseline.\n" +
+                               "# Delete a line to re-record it.\n")
+        for ((name, size) in sizes) {
+            sB.append(name).append("=").append(size).append("\n")
+        }
+        Files.write(file, sB.toString().toByteArray(StandardCharsets.UTF_8))
+    }
+}
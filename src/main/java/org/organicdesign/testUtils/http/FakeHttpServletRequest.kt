@@ -17,10 +17,14 @@ import java.util.*
 
 /**
  * This mocks an HttpServletRequest - EXPERIMENTAL
+ *
+ * Make one with [ReqB.toReq], or make many from a [ReqTemplate].  Headers, params, and body bytes are
+ * shared with the template.  Attributes are copied the first time one is changed, and cookies the
+ * first time they are read.
  */
 class FakeHttpServletRequest
 internal constructor(
-        reqB: ReqB
+        template: ReqTemplate
 ) : HttpServletRequest, IndentedStringable {
     override fun indentedStr(indent: Int, singleLine: Boolean): String =
         classFieldsK(
@@ -31,17 +35,17 @@ internal constructor(
                    "encoding" to characterEncoding,
                    "locale" to locale,
                    "requestedSessionId" to requestedSessionId,
-                   "inputStream" to inStream,
+                   "inputStream" to body,
                    "attributes" to attributes,
                    "cookies" to cookies.map{ CookiePrinter(it) },
                    "params" to params,
-                   "headers" to heads
+                   "headers" to heads.entries.toTypedArray()
             ).filter { it.second != null },
             singleLine)
 
     override fun toString(): String = indentedStr(0)
 
-    private val baseUrl: String = reqB.baseUrl
+    private val baseUrl: String = template.baseUrl
     // TODO: What about nulls?  Also, Needs to return a Protocol, server name, port num, and server path (but no query string)
     override fun getRequestURL(): StringBuffer {
         val sB = StringBuffer(baseUrl)
@@ -51,7 +55,7 @@ internal constructor(
         return sB
     }
 
-    private val uri: String? = reqB.uri
+    private val uri: String? = template.uri
     // 2018-03-02: Tomcat 8 can return null here.  Jetty does not.
     override fun getPathInfo(): String? = uri
     override fun getRequestURI(): String? = uri
@@ -60,17 +64,17 @@ internal constructor(
 
     // Looks like an IP address
     // My code elsewhere assumes that this can never be null, so I'm going with that, at least for Jetty.
-    private val remoteAddr = reqB.remoteAddr
+    private val remoteAddr = template.remoteAddr
     override fun getRemoteAddr(): String = remoteAddr
 
-    private val method: String = reqB.method
+    private val method: String = template.method
     override fun getMethod(): String = method
 
-    private var characterEncoding: String? = reqB.characterEncoding
+    private var characterEncoding: String? = template.characterEncoding
     override fun getCharacterEncoding(): String? = characterEncoding
     override fun setCharacterEncoding(s: String?) { characterEncoding = s }
 
-    private val locale: Locale? = reqB.locale
+    private val locale: Locale? = template.locale
     // TODO: Can this be null?
     override fun getLocale(): Locale? = locale
 
@@ -78,16 +82,18 @@ internal constructor(
     override fun getLocales(): Enumeration<Locale?> =
             enumeration(listOf(locale))
 
-    private val requestedSessionId: String? = reqB.requestedSessionId
+    private val requestedSessionId: String? = template.requestedSessionId
     override fun getRequestedSessionId(): String? = requestedSessionId
 
-    private val inStream = reqB.inStream
-    private val inStreamSize = reqB.inStreamSize
+    private val body: RequestBody? = template.body
+    private val inStreamSize = template.bodySize
+    // This request's own cursor into the shared body, made on first use.
+    private var inStream: FakeServletInputStream? = null
     override fun getInputStream(): ServletInputStream? =
-            if (inStream == null) {
+            if (body == null) {
                 null
             } else {
-                FakeServletInputStream(inStream)
+                inStream ?: FakeServletInputStream(body.openStream()).also { inStream = it }
             }
 
     override fun getContentLength(): Int =
@@ -102,13 +108,25 @@ internal constructor(
     private var _multiParts: MultiPartFormInputStream? = null
     private var _contentParameters: MultiMap<String>? = null
 
-    private val attributes: MutableMap<String, Any> = reqB.attributes
+    // The template's attributes until the first change, then this request's own copy.
+    private var attributes: Map<String, Any> = template.attributes
+    private var ownAttributes: MutableMap<String, Any>? = null
+    private fun ownAttributes(): MutableMap<String, Any> =
+            ownAttributes ?: LinkedHashMap(attributes).also {
+                ownAttributes = it
+                attributes = it
+            }
+
     override fun getAttribute(s: String): Any? = attributes[s]
     override fun getAttributeNames(): Enumeration<String> = enumeration(attributes.keys)
-    override fun setAttribute(s: String, o: Any) { attributes[s] = o }
-    override fun removeAttribute(s: String) { attributes.remove(s) }
+    override fun setAttribute(s: String, o: Any) { ownAttributes()[s] = o }
+    override fun removeAttribute(s: String) {
+        if (attributes.containsKey(s)) {
+            ownAttributes().remove(s)
+        }
+    }
 
-    private val params: Map<String, List<String?>> = reqB.params.toMap()
+    private val params: Map<String, List<String?>> = template.params
     override fun getParameterNames(): Enumeration<String> = enumeration(params.keys)
     override fun getParameterValues(s: String): Array<String?>? = params[s]?.toTypedArray()
     override fun getParameter(s: String): String? = getParameterValues(s)?.get(0)
@@ -132,39 +150,19 @@ internal constructor(
         return sB.toString()
     }
 
-    // HTTP headers are case-insensitive.
-    // https://stackoverflow.com/questions/8236945/case-insensitive-string-as-hashmap-key
-    // For case insensitive hack:
-    // https://stackoverflow.com/questions/8236945/case-insensitive-string-as-hashmap-key
-    // Actual implementation in Jetty uses an *array*.
-    private val heads: Array<Map.Entry<String, String>> = when {
-        reqB.headers.any{ HTTP_HEAD_HOST.equals(it.key, ignoreCase = true) } -> reqB.headers.toTypedArray()
-        else -> {
-            val hs = reqB.headers.toMutableList()
-            hs.add(Kv(HTTP_HEAD_HOST, reqB.baseUrl.substringAfter("//")))
-            hs.toTypedArray()
-        }
-    }
+    // HTTP headers are case-insensitive.  Built once by the template and never changed, so every
+    // lookup is a hash of the lower-case name.
+    private val heads: HeaderFields = template.headers
 
-    override fun getHeader(p0: String?): String? {
-        if (p0 != null) {
-            for (head in heads) {
-                if (p0.equals(head.key, ignoreCase = true)) {
-                    return head.value
-                }
-            }
-        }
-        return null
-    }
+    override fun getHeader(p0: String?): String? =
+            if (p0 == null) null else heads.first(p0)
 
-    override fun getHeaders(s: String?): Enumeration<String>? {
-        val header = getHeader(s)
-        return if (header == null) null else enumeration(listOf(header))
-    }
+    /** All values for this header, in order.  Null for a null name, like Jetty. */
+    override fun getHeaders(s: String?): Enumeration<String>? =
+            if (s == null) null else enumeration(heads.values(s))
 
-    override fun getHeaderNames(): Enumeration<String> {
-        return enumeration(heads.map { it.key }.toList())
-    }
+    /** Each distinct header name once, in the order first seen. */
+    override fun getHeaderNames(): Enumeration<String> = enumeration(heads.nameSet)
 
     override fun getIntHeader(s: String): Int =
             try {
@@ -179,11 +177,18 @@ internal constructor(
 
     override fun getContentType(): String? = getHeader("Content-Type")
 
-    private val cookies: MutableList<Cookie> = reqB.cookies
+    private val templateCookies: List<Cookie> = template.cookies
+    // This request's clones of the template's cookies, so changing one doesn't change other requests.
+    private var ownCookies: Array<Cookie>? = null
+    private val cookies: List<Cookie>
+        get() = ownCookies?.asList() ?: templateCookies
+
     override fun getCookies(): Array<Cookie>? =
             when {
-                cookies.isEmpty() -> null
-                else              -> cookies.toTypedArray()
+                templateCookies.isEmpty() -> null
+                else                      -> ownCookies ?: Array(templateCookies.size) {
+                    templateCookies[it].clone() as Cookie
+                }.also { ownCookies = it }
             }
 
     override fun getAuthType(): String {
@@ -478,6 +483,15 @@ internal constructor(
                 return ret
             }
 
+            // Forwarded so a file-backed body can jump ahead without reading and release its file.
+            @Throws(IOException::class)
+            override fun skip(n: Long): Long = inStream.skip(n)
+
+            @Throws(IOException::class)
+            override fun available(): Int = inStream.available()
+
+            @Throws(IOException::class)
+            override fun close() = inStream.close()
         }
     }
 }
@@ -2,9 +2,16 @@ package org.organicdesign.testUtils.http
 
 import jakarta.servlet.http.Cookie
 import jakarta.servlet.http.HttpServletResponse
+import org.eclipse.jetty.http.DateGenerator
 import org.organicdesign.indented.IndentedStringable
 import org.organicdesign.indented.StringUtils.classFieldsK
 import java.io.PrintWriter
+import java.io.Writer
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.charset.Charset
+import java.nio.charset.CharsetEncoder
+import java.nio.charset.CodingErrorAction
 import java.util.*
 
 /**
@@ -15,13 +22,13 @@ class FakeHttpServletResponse : HttpServletResponse, IndentedStringable {
     override fun indentedStr(indent: Int, singleLine: Boolean): String =
         classFieldsK(indent, "FakeHttpServletResponse",
                      listOf("status" to status,
-                            "committed" to committed,
+                            "committed" to isCommitted,
                             "redirect" to redirect,
                             "contentType" to contentType,
                             "encoding" to encoding,
                             "locale" to locale,
                             "cookies" to cookies.map{ CookiePrinter(it) },
-                            "headers" to headers,
+                            "headers" to headers.entries,
                             "outputStream" to outputStream
                      ).filter { it.second != null },
                      singleLine)
@@ -50,8 +57,7 @@ class FakeHttpServletResponse : HttpServletResponse, IndentedStringable {
         }
     }
 
-    private var committed = false
-    override fun isCommitted(): Boolean = committed
+    override fun isCommitted(): Boolean = outputStream.isCommitted()
 
     private var encoding: String? = null
     override fun getCharacterEncoding(): String? = encoding
@@ -60,83 +66,81 @@ class FakeHttpServletResponse : HttpServletResponse, IndentedStringable {
     val cookies: MutableList<Cookie> = mutableListOf()
     override fun addCookie(cookie: Cookie) { cookies.add(cookie) }
 
-    private val outputStream = FakeServletOutputStream()
+    /** The charset for the writer and the body: the character encoding, or ISO-8859-1 like the servlet spec says. */
+    private fun charset(): Charset =
+            Charset.forName(encoding ?: "ISO-8859-1")
+
+    private val outputStream = FakeServletOutputStream(::charset)
+
+    /** The body and the response buffer.  Its flushes show when and how much was sent. */
     override fun getOutputStream(): FakeServletOutputStream = outputStream
-    override fun getWriter(): PrintWriter = PrintWriter(outputStream.stringWriter)
-    private var bufferSize: Int = DEFAULT_BUFFER_SIZE
-    override fun getBufferSize(): Int = bufferSize
-    override fun setBufferSize(i: Int) { bufferSize = i }
-    override fun flushBuffer() { }
-    override fun resetBuffer() { }
-    override fun reset() { }
-
-    private val headers: MutableList<Map.Entry<String, String>> = mutableListOf()
-
-    override fun getHeaderNames(): Collection<String> = headers.map{ it.key }.toSet()
-
-    override fun getHeader(s: String): String? {
-        val iter = getHeaders(s).iterator()
-        return if (iter.hasNext())
-            iter.next()
-        else
-            null
-    }
 
-    override fun getHeaders(s: String?): Collection<String> {
-        val values: MutableList<String> = mutableListOf()
-        if (s != null) {
-            for (head in headers) {
-                if (s.equals(head.key, ignoreCase = true)) {
-                    values.add(head.value)
-                }
-            }
+    private var writer: PrintWriter? = null
+
+    /**
+     * Returns the same writer every time.  Its character set is fixed by the first call, like in a real
+     * container.  It encodes straight into the output stream, so the response buffer is the only buffer.
+     */
+    override fun getWriter(): PrintWriter =
+            writer ?: PrintWriter(EncodingWriter(outputStream, charset())).also { writer = it }
+
+    override fun getBufferSize(): Int = outputStream.bufferSize
+
+    override fun setBufferSize(i: Int) {
+        if (outputStream.size() > 0 || isCommitted) {
+            throw IllegalStateException("Can't set buffer size after content has been written.")
         }
-        return values
+        outputStream.bufferSize = maxOf(i, 0)
     }
 
-    override fun containsHeader(s: String?): Boolean {
-        if (s != null) {
-            for (head in headers) {
-                if (s.equals(head.key, ignoreCase = true)) {
-                    return true
-                }
-            }
+    override fun flushBuffer() = outputStream.flush()
+
+    override fun resetBuffer() {
+        if (isCommitted) {
+            throw IllegalStateException("Response already committed.")
         }
-        return false
+        outputStream.resetBuffer()
     }
 
+    /** Clears the buffer, status, headers, cookies, content type, character encoding, and locale. */
+    override fun reset() {
+        resetBuffer()
+        status = 0
+        headers.clear()
+        cookies.clear()
+        contentType = null
+        encoding = null
+        locale = null
+    }
+
+    private val headers = HeaderFields()
+
+    override fun getHeaderNames(): Collection<String> = headers.nameSet
+
+    override fun getHeader(s: String): String? = headers.first(s)
+
+    override fun getHeaders(s: String?): Collection<String> =
+            if (s == null) emptyList() else headers.values(s)
+
+    override fun containsHeader(s: String?): Boolean = (s != null) && (s in headers)
+
+    /** Replaces every value with this name, or adds one if there isn't one yet. */
     override fun setHeader(s: String?, s1: String) {
         if (s != null) {
-            for (i in headers.indices) {
-                val head = headers[i]
-                if (s.equals(head.key, ignoreCase = true)) {
-                    headers[i] = Kv(s, s1)
-                    return
-                }
-            }
-            addHeader(s, s1)
+            headers.set(s, s1)
         }
     }
 
-    override fun addHeader(s: String, s1: String) {
-        headers.add(Kv(s, s1))
-    }
+    override fun addHeader(s: String, s1: String) = headers.add(s, s1)
 
-    override fun setDateHeader(s: String, l: Long) {
-        setHeader(s, l.toString())
-    }
+    /** Formats the date the way HTTP wants it: Sun, 06 Nov 1994 08:49:37 GMT */
+    override fun setDateHeader(s: String, l: Long) = headers.set(s, DateGenerator.formatDate(l))
 
-    override fun addDateHeader(s: String, l: Long) {
-        addHeader(s, l.toString())
-    }
+    override fun addDateHeader(s: String, l: Long) = headers.add(s, DateGenerator.formatDate(l))
 
-    override fun setIntHeader(s: String, i: Int) {
-        setHeader(s, i.toString())
-    }
+    override fun setIntHeader(s: String, i: Int) = headers.set(s, i.toString())
 
-    override fun addIntHeader(s: String, i: Int) {
-        addHeader(s, i.toString())
-    }
+    override fun addIntHeader(s: String, i: Int) = headers.add(s, i.toString())
 
     override fun encodeRedirectURL(s: String): String? {
         redirect = encodeURL(s)
@@ -157,13 +161,14 @@ class FakeHttpServletResponse : HttpServletResponse, IndentedStringable {
     override fun encodeUrl(s: String): String = encodeURL(s)
 
     override fun sendError(i: Int, s: String) {
-        if (committed) {
+        if (isCommitted) {
             throw IllegalStateException("Response already committed.")
         }
+        resetBuffer()
         status = i
         contentType = "text/html"
-        committed = true
-        // TODO: "clear the buffer"
+        // Sends the headers with nothing buffered, which commits the response.
+        outputStream.flush()
         // TODO: Where does the string parameter go?
     }
 
@@ -186,3 +191,55 @@ class FakeHttpServletResponse : HttpServletResponse, IndentedStringable {
         }
     }
 }
+
+/**
+ * Encodes chars into the output stream as they are written, keeping a trailing high surrogate until its
+ * low half arrives.  Unmappable chars become the charset's replacement, like in an OutputStreamWriter.
+ */
+private class EncodingWriter(
+    private val out: FakeServletOutputStream,
+    charset: Charset
+) : Writer() {
+    private val encoder: CharsetEncoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+    private val bytes: ByteBuffer = ByteBuffer.allocate(BYTES_SIZE)
+    private var highSurrogate: Char? = null
+
+    override fun write(cbuf: CharArray, off: Int, len: Int) {
+        if (len == 0) {
+            return
+        }
+        val high = highSurrogate
+        val chars: CharBuffer = if (high == null) {
+            CharBuffer.wrap(cbuf, off, len)
+        } else {
+            highSurrogate = null
+            val joined = CharArray(len + 1)
+            joined[0] = high
+            System.arraycopy(cbuf, off, joined, 1, len)
+            CharBuffer.wrap(joined)
+        }
+        while (encoder.encode(chars, bytes, false).isOverflow) {
+            drain()
+        }
+        drain()
+        // On underflow, all that can be left is a high surrogate waiting for the next write.
+        if (chars.hasRemaining()) {
+            highSurrogate = chars.get()
+        }
+    }
+
+    private fun drain() {
+        out.write(bytes.array(), 0, bytes.position())
+        bytes.clear()
+    }
+
+    override fun flush() = out.flush()
+
+    override fun close() = flush()
+
+    companion object {
+        private const val BYTES_SIZE = 1024
+    }
+}
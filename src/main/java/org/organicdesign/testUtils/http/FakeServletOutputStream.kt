@@ -3,16 +3,47 @@ package org.organicdesign.testUtils.http
 import jakarta.servlet.ServletOutputStream
 import jakarta.servlet.WriteListener
 import org.organicdesign.indented.IndentedStringable
+import org.organicdesign.indented.StringUtils.fieldsOnOneLineK
 import org.organicdesign.indented.StringUtils.stringify
-import java.io.StringWriter
+import java.nio.ByteBuffer
+import java.nio.charset.Charset
+import java.util.Collections
+import java.util.Objects
+
+/**
+ * Collects the body of a response in a growable byte array, so that large bodies can be written in bulk
+ * and binary or non-Latin-1 output comes out the way it went in.
+ *
+ * Like a real container, it holds up to [bufferSize] bytes before sending them.  Overflowing the buffer
+ * or calling [flush] sends the buffered bytes and commits the response.  Each send is recorded in
+ * [flushes].  Nothing is really sent anywhere: the whole body stays available for assertions.
+ *
+ * @param charset supplies the character set for [contentAsString] and toString().  The response passes
+ * its current character encoding.
+ */
+class FakeServletOutputStream @JvmOverloads constructor(
+    private val charset: () -> Charset = { Charsets.UTF_8 }
+) : ServletOutputStream(), IndentedStringable {
 
-class FakeServletOutputStream: ServletOutputStream(), IndentedStringable {
     override fun indentedStr(indent: Int, singleLine: Boolean): String =
-            "FakeServletOutputStream(${stringify(stringWriter.toString())})"
+            "FakeServletOutputStream(${stringify(contentAsString())})"
 
     override fun toString(): String = indentedStr(0)
 
-    val stringWriter = StringWriter()
+    private var buf = ByteArray(INITIAL_CAPACITY)
+    private var count = 0
+    // Bytes before this have been sent.
+    private var sent = 0
+    private var committed = false
+
+    /** How many bytes are held before they are sent.  Set through the response. */
+    var bufferSize: Int = DEFAULT_BUFFER_SIZE
+        internal set
+
+    private val flushLog: MutableList<Flush> = mutableListOf()
+
+    /** Each time buffered bytes were sent, in order. */
+    val flushes: List<Flush> = Collections.unmodifiableList(flushLog)
 
     override fun isReady(): Boolean = true
 
@@ -21,6 +52,106 @@ class FakeServletOutputStream: ServletOutputStream(), IndentedStringable {
     }
 
     override fun write(b: Int) {
-        stringWriter.append(b.toChar())
+        ensureCapacity(count + 1)
+        buf[count] = b.toByte()
+        count++
+        if (count - sent >= bufferSize) {
+            send()
+        }
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+        Objects.checkFromIndexSize(off, len, b.size)
+        // Make room by sending what's buffered.  Anything still too big goes straight out.
+        if ( (count > sent) && (count - sent + len > bufferSize) ) {
+            send()
+        }
+        ensureCapacity(count + len)
+        System.arraycopy(b, off, buf, count, len)
+        count += len
+        if ( (count > sent) && (count - sent >= bufferSize) ) {
+            send()
+        }
+    }
+
+    /** Sends anything buffered and commits the response. */
+    override fun flush() {
+        send()
+    }
+
+    /** True once any bytes (or just the headers) have been sent. */
+    fun isCommitted(): Boolean = committed
+
+    /** The number of bytes written but not yet sent. */
+    fun bufferedSize(): Int = count - sent
+
+    /** Throws away bytes that haven't been sent yet. */
+    internal fun resetBuffer() {
+        count = sent
+    }
+
+    private fun send() {
+        if (count > sent || !committed) {
+            flushLog.add(Flush(count - sent, System.nanoTime()))
+            sent = count
+            committed = true
+        }
+    }
+
+    /** The number of bytes written so far. */
+    fun size(): Int = count
+
+    /** A copy of the bytes written so far. */
+    fun toByteArray(): ByteArray = buf.copyOf(count)
+
+    /**
+     * A read-only view of the bytes written so far, without copying them.  Bytes written after this
+     * call may not show up in the view.
+     */
+    fun asByteBuffer(): ByteBuffer = ByteBuffer.wrap(buf, 0, count).slice().asReadOnlyBuffer()
+
+    /** The bytes written so far, decoded with the response's character set. */
+    fun contentAsString(): String = String(buf, 0, count, charset())
+
+    private fun ensureCapacity(minCapacity: Int) {
+        if (minCapacity < 0) {
+            throw OutOfMemoryError("Response body larger than ${Int.MAX_VALUE} bytes")
+        }
+        if (minCapacity > buf.size) {
+            // Double, so that n single-byte writes take O(n) time in total.
+            var newCapacity = buf.size shl 1
+            if (newCapacity < minCapacity) {
+                newCapacity = minCapacity
+            }
+            if (newCapacity < 0 || newCapacity > MAX_CAPACITY) {
+                newCapacity = maxOf(minCapacity, MAX_CAPACITY)
+            }
+            buf = buf.copyOf(newCapacity)
+        }
+    }
+
+    /**
+     * One send of buffered bytes.
+     *
+     * @param bytes how many bytes were sent.  The first flush may send none, just committing the headers.
+     * @param nanoTime [System.nanoTime] when they were sent.  Compare with a nanoTime taken before
+     * calling the servlet to measure time to first byte.
+     */
+    data class Flush(
+        val bytes: Int,
+        val nanoTime: Long
+    ) : IndentedStringable {
+        override fun indentedStr(indent: Int, singleLine: Boolean): String =
+            fieldsOnOneLineK(indent, "Flush",
+                             listOf("bytes" to bytes,
+                                    "nanoTime" to nanoTime))
+
+        override fun toString(): String = indentedStr(0)
+    }
+
+    companion object {
+        private const val INITIAL_CAPACITY = 256
+        // Some JVMs reserve a few header words in an array.
+        private const val MAX_CAPACITY = Int.MAX_VALUE - 8
     }
-}
\ No newline at end of file
+}
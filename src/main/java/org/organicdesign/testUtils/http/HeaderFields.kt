@@ -0,0 +1,99 @@
+package org.organicdesign.testUtils.http
+
+import org.eclipse.jetty.http.HttpHeader
+import java.util.Collections
+import java.util.Locale
+
+/**
+ * Headers in the order they were added, with a case-insensitive index from each name to its values
+ * and their positions, like Jetty's HttpFields.  Lookups hash the lower-case name instead of
+ * scanning every header.  The lower-case forms of the standard header names are computed once, so
+ * looking those up doesn't allocate.
+ *
+ * Setting a name that has several values removes all but the first, which moves the fields after
+ * them, so that's the one time the positions are rebuilt.  A request builds one of these and never
+ * changes it, so requests can share it.
+ */
+internal class HeaderFields {
+    /** The values for one name, and where they are in fields. */
+    private class Slot {
+        val positions: MutableList<Int> = ArrayList(1)
+        val values: MutableList<String> = ArrayList(1)
+        val view: List<String> = Collections.unmodifiableList(values)
+    }
+
+    private val fields: MutableList<Kv> = mutableListOf()
+    private val index: MutableMap<String, Slot> = HashMap()
+    private val names: MutableSet<String> = LinkedHashSet()
+
+    /** Every header in order, as name-value pairs. */
+    val entries: List<Kv> = Collections.unmodifiableList(fields)
+
+    /** The distinct names as they were added.  A live, read-only view. */
+    val nameSet: Set<String> = Collections.unmodifiableSet(names)
+
+    fun isEmpty(): Boolean = fields.isEmpty()
+
+    operator fun contains(name: String): Boolean = index.containsKey(lowerCase(name))
+
+    /** The first value for this name, or null. */
+    fun first(name: String): String? = index[lowerCase(name)]?.values?.get(0)
+
+    /** All values for this name, in order, as a live read-only view.  Empty if there are none. */
+    fun values(name: String): List<String> = index[lowerCase(name)]?.view ?: emptyList()
+
+    fun add(name: String, value: String) {
+        val slot = index.getOrPut(lowerCase(name)) { Slot() }
+        slot.positions.add(fields.size)
+        slot.values.add(value)
+        fields.add(Kv(name, value))
+        names.add(name)
+    }
+
+    /**
+     * Replaces every value for this name with this one, where the first value was, like Jetty's
+     * HttpFields.put().  Adds it if there isn't one.
+     */
+    fun set(name: String, value: String) {
+        val slot = index[lowerCase(name)]
+        if (slot == null) {
+            add(name, value)
+            return
+        }
+        val pos = slot.positions[0]
+        val renamed = fields[pos].key != name
+        fields[pos] = Kv(name, value)
+        slot.values.clear()
+        slot.values.add(value)
+        if (slot.positions.size > 1) {
+            // From the back, so the earlier positions don't move.
+            for (i in slot.positions.size - 1 downTo 1) {
+                fields.removeAt(slot.positions[i])
+            }
+            for (other in index.values) {
+                other.positions.clear()
+            }
+            for ((i, field) in fields.withIndex()) {
+                index.getValue(lowerCase(field.key)).positions.add(i)
+            }
+        } else if (!renamed) {
+            return
+        }
+        names.clear()
+        fields.mapTo(names) { it.key }
+    }
+
+    fun clear() {
+        fields.clear()
+        index.clear()
+        names.clear()
+    }
+
+    companion object {
+        private val KNOWN_LOWER: Map<String, String> =
+                HttpHeader.values().associate { it.asString() to it.lowerCaseName() }
+
+        fun lowerCase(name: String): String =
+                KNOWN_LOWER[name] ?: name.lowercase(Locale.ROOT)
+    }
+}
@@ -1,8 +1,10 @@
 package org.organicdesign.testUtils.http
 
 import java.io.ByteArrayInputStream
+import java.io.InputStream
 import java.lang.IllegalArgumentException
-import java.nio.charset.Charset
+import java.nio.ByteBuffer
+import java.nio.file.Path
 import java.util.*
 import jakarta.servlet.http.Cookie
 
@@ -37,7 +39,7 @@ class ReqB {
         return this
     }
 
-    internal var inStream: ByteArrayInputStream? = null //ByteArrayInputStream(byteArrayOf())
+    internal var body: RequestBody? = null
     internal var inStreamSize: Long = -1
 
     fun attributes(m: MutableMap<String, Any>): ReqB {
@@ -93,13 +95,44 @@ class ReqB {
         return this
     }
 
+    /**
+     * Copies the rest of the stream (without moving it) to use as the body, and reports the given
+     * size as the content length.
+     */
     fun inStream(stream: ByteArrayInputStream, size: Long): ReqB {
-        inStream = stream
+        body = RequestBody.of(readWithoutConsuming(stream))
         inStreamSize = size
         return this
     }
 
-    fun toReq(): FakeHttpServletRequest = FakeHttpServletRequest(this)
+    /** Sets the body and uses its size as the content length.  One body can be shared by many requests. */
+    fun body(b: RequestBody): ReqB {
+        body = b
+        inStreamSize = b.size()
+        return this
+    }
+
+    /** Streams the body from this file, memory-mapped, with the file size as the content length. */
+    fun body(path: Path): ReqB = body(RequestBody.of(path))
+
+    /** Uses the bytes between the buffer's position and limit, which can be a direct buffer. */
+    fun body(buffer: ByteBuffer): ReqB = body(RequestBody.of(buffer))
+
+    /**
+     * Each request reads a new stream from the supplier.
+     *
+     * @param size the content length, or -1 if unknown
+     */
+    @JvmOverloads
+    fun body(supplier: () -> InputStream, size: Long = -1): ReqB = body(RequestBody.of(supplier, size))
+
+    fun toReq(): FakeHttpServletRequest = FakeHttpServletRequest(freeze())
+
+    /**
+     * A frozen copy of this builder for making many requests cheaply.  Changes to this builder after
+     * freezing don't affect the template.
+     */
+    fun freeze(): ReqTemplate = ReqTemplate(this)
 
     companion object {
         // Input under Apache license, taken from
@@ -112,9 +145,16 @@ class ReqB {
                 "\r\n" +
                 "-----1234--\r\n"
 
-        private val testStream: ByteArrayInputStream =
-                text.byteInputStream(Charset.forName("UTF-8"))
+        // Every request gets its own stream over these bytes, so they can't be drained.
+        private val testBody: RequestBody = RequestBody.of(text.toByteArray(Charsets.UTF_8))
 
+        private fun readWithoutConsuming(stream: ByteArrayInputStream): ByteArray =
+                synchronized(stream) {
+                    stream.mark(Int.MAX_VALUE)
+                    val bytes = stream.readAllBytes()
+                    stream.reset()
+                    bytes
+                }
 
         @JvmStatic
         fun funDefaults() = ReqB()
@@ -150,7 +190,7 @@ class ReqB {
                 .characterEncoding("UTF-8")
                 .requestedSessionId("2FCF6F9AA75782B8B783308DE74BC557")
                 .remoteAddr("0:0:0:0:0:0:0:1")
-                .inStream(testStream, text.length.toLong())
+                .body(testBody)
 
         /**
          * Make sure to pass a Content-Type header if you want Apache Commons-Fileupload to work!
@@ -0,0 +1,50 @@
+package org.organicdesign.testUtils.http
+
+import jakarta.servlet.http.Cookie
+import java.util.Collections
+import java.util.Locale
+
+/**
+ * A frozen copy of a [ReqB] that stamps out as many [FakeHttpServletRequest]s as you like, cheaply.
+ * Get one from [ReqB.freeze].  Changing the ReqB afterward doesn't change the template.
+ *
+ * All requests from one template share its headers, params, and [RequestBody], which nothing ever
+ * changes.  Each request gets its own copy of the attributes the first time it sets or removes one,
+ * its own copies of the cookies the first time it asks for them, and its own cursor into the body.  So making a request allocates very little, and requests
+ * from the same template can be used on different threads.
+ */
+class ReqTemplate internal constructor(reqB: ReqB) {
+    internal val method: String = reqB.method
+    internal val baseUrl: String = reqB.baseUrl
+    internal val uri: String? = reqB.uri
+    internal val characterEncoding: String? = reqB.characterEncoding
+    internal val locale: Locale? = reqB.locale
+    internal val requestedSessionId: String? = reqB.requestedSessionId
+    internal val remoteAddr: String = reqB.remoteAddr
+
+    internal val headers: HeaderFields = HeaderFields().apply {
+        for ((key, value) in reqB.headers) {
+            add(key, value)
+        }
+        if (FakeHttpServletRequest.HTTP_HEAD_HOST !in this) {
+            add(FakeHttpServletRequest.HTTP_HEAD_HOST, reqB.baseUrl.substringAfter("//"))
+        }
+    }
+
+    internal val params: Map<String, List<String?>> =
+            Collections.unmodifiableMap(
+                    reqB.params.entries.associateTo(LinkedHashMap()) { (k, v) ->
+                        k to Collections.unmodifiableList(ArrayList(v))
+                    })
+
+    internal val attributes: Map<String, Any> = Collections.unmodifiableMap(LinkedHashMap(reqB.attributes))
+
+    // Cookies have setters, so the template keeps its own copies and each request clones those.
+    internal val cookies: List<Cookie> = Collections.unmodifiableList(reqB.cookies.map { it.clone() as Cookie })
+
+    internal val body: RequestBody? = reqB.body
+    internal val bodySize: Long = reqB.inStreamSize
+
+    /** A new request with its own attributes and body cursor. */
+    fun toReq(): FakeHttpServletRequest = FakeHttpServletRequest(this)
+}
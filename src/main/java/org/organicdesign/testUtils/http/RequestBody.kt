@@ -0,0 +1,218 @@
+package org.organicdesign.testUtils.http
+
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.Objects
+
+/**
+ * The bytes of a request body, which never change.  Each call to [openStream] returns a new stream
+ * starting at the beginning, so one body can feed any number of requests on any number of threads
+ * without copying.  Use [ReqB.body] to give one to a request.
+ */
+interface RequestBody {
+    /** The length in bytes, or -1 if it isn't known. */
+    fun size(): Long
+
+    /** A new stream with its own cursor, starting at the first byte. */
+    fun openStream(): InputStream
+
+    companion object {
+        /** A body of these bytes.  Don't change the array afterward. */
+        @JvmStatic
+        fun of(bytes: ByteArray): RequestBody = BytesBody(bytes)
+
+        /**
+         * A body of the bytes between the buffer's position and limit.  A direct buffer keeps a big body
+         * off the heap.  Streams read through their own duplicates, so this never changes the buffer's
+         * position.  Don't change the contents afterward.
+         */
+        @JvmStatic
+        fun of(buffer: ByteBuffer): RequestBody = BufferBody(buffer.slice().asReadOnlyBuffer())
+
+        /**
+         * A body read from this file each time a stream is opened, through a FileChannel that maps
+         * [MAP_WINDOW] bytes at a time.  Any size of file streams in constant memory.  The content
+         * length comes from the file size.  Don't change the file afterward.
+         */
+        @JvmStatic
+        fun of(path: Path): RequestBody = of(path, MAP_WINDOW)
+
+        internal fun of(path: Path, window: Long): RequestBody = PathBody(path, Files.size(path), window)
+
+        /**
+         * A body read from a new stream from the supplier each time one is opened, for bodies made on
+         * the fly.  Only the supplier knows the size, so pass it for a content length.
+         *
+         * @param supplier returns a new stream over the same bytes on each call
+         * @param size the number of bytes each stream returns, or -1 if unknown
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun of(supplier: () -> InputStream, size: Long = -1): RequestBody = SupplierBody(supplier, size)
+
+        /** 64 MB */
+        const val MAP_WINDOW: Long = 1L shl 26
+    }
+}
+
+private class BytesBody(private val bytes: ByteArray) : RequestBody {
+    override fun size(): Long = bytes.size.toLong()
+    override fun openStream(): InputStream = ByteArrayInputStream(bytes)
+    override fun toString(): String = "RequestBody(${bytes.size} bytes)"
+}
+
+private class BufferBody(private val buffer: ByteBuffer) : RequestBody {
+    override fun size(): Long = buffer.remaining().toLong()
+    override fun openStream(): InputStream = ByteBufferInputStream(buffer.duplicate())
+    override fun toString(): String = "RequestBody(${buffer.remaining()} bytes)"
+}
+
+private class PathBody(
+        private val path: Path,
+        private val size: Long,
+        private val window: Long
+) : RequestBody {
+    override fun size(): Long = size
+    override fun openStream(): InputStream = MappedFileInputStream(path, window)
+    override fun toString(): String = "RequestBody($path)"
+}
+
+private class SupplierBody(
+        private val supplier: () -> InputStream,
+        private val size: Long
+) : RequestBody {
+    override fun size(): Long = size
+    override fun openStream(): InputStream = supplier()
+    override fun toString(): String =
+            if (size < 0) "RequestBody(supplier)" else "RequestBody(supplier, $size bytes)"
+}
+
+/**
+ * Reads a file by memory-mapping one window at a time, so files over 2 GB stream in constant memory.
+ * If the file system can't map, it reads each window into a heap buffer instead.
+ */
+internal class MappedFileInputStream(
+        path: Path,
+        private val window: Long
+) : InputStream() {
+    private val channel: FileChannel = FileChannel.open(path, StandardOpenOption.READ)
+    private val size: Long = channel.size()
+    private var mappable = true
+    // File offset of the start of buf
+    private var bufStart = 0L
+    private var buf: ByteBuffer = ByteBuffer.allocate(0)
+
+    /** How many windows have been mapped or read so far. */
+    internal var windowsLoaded = 0
+        private set
+
+    private fun filePosition(): Long = bufStart + buf.position()
+
+    /** Loads the window at the current position.  Returns false at the end of the file. */
+    private fun nextWindow(): Boolean {
+        val pos = filePosition()
+        if (pos >= size) {
+            return false
+        }
+        val len = minOf(window, size - pos)
+        windowsLoaded++
+        if (mappable) {
+            try {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, len)
+                bufStart = pos
+                return true
+            } catch (e: UnsupportedOperationException) {
+                mappable = false
+            } catch (e: IOException) {
+                mappable = false
+            }
+        }
+        val heap = ByteBuffer.allocate(minOf(len, HEAP_WINDOW.toLong()).toInt())
+        while (heap.hasRemaining() && channel.read(heap, pos + heap.position()) >= 0) {
+            // Keep reading until the buffer is full or the file ends.
+        }
+        heap.flip()
+        buf = heap
+        bufStart = pos
+        return heap.hasRemaining()
+    }
+
+    override fun read(): Int =
+            if (buf.hasRemaining() || nextWindow()) {
+                buf.get().toInt() and 0xff
+            } else {
+                -1
+            }
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        Objects.checkFromIndexSize(off, len, b.size)
+        if (len == 0) {
+            return 0
+        }
+        if (!buf.hasRemaining() && !nextWindow()) {
+            return -1
+        }
+        val n = minOf(len, buf.remaining())
+        buf.get(b, off, n)
+        return n
+    }
+
+    /** Moves to a new offset without reading the bytes in between. */
+    override fun skip(n: Long): Long {
+        val pos = filePosition()
+        val target = pos + minOf(maxOf(n, 0), size - pos)
+        if (target - bufStart <= buf.limit()) {
+            buf.position((target - bufStart).toInt())
+        } else {
+            buf = ByteBuffer.allocate(0)
+            bufStart = target
+        }
+        return target - pos
+    }
+
+    override fun available(): Int = buf.remaining()
+
+    override fun close() = channel.close()
+
+    internal fun isOpen(): Boolean = channel.isOpen
+
+    companion object {
+        private const val HEAP_WINDOW = 1 shl 16
+    }
+}
+
+/** Reads a buffer from its position to its limit.  Only this stream should use the buffer. */
+internal class ByteBufferInputStream(private val buf: ByteBuffer) : InputStream() {
+    override fun read(): Int =
+            if (buf.hasRemaining()) {
+                buf.get().toInt() and 0xff
+            } else {
+                -1
+            }
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        if (len == 0) {
+            return 0
+        }
+        if (!buf.hasRemaining()) {
+            return -1
+        }
+        val n = minOf(len, buf.remaining())
+        buf.get(b, off, n)
+        return n
+    }
+
+    override fun skip(n: Long): Long {
+        val skipped = minOf(maxOf(n, 0), buf.remaining().toLong()).toInt()
+        buf.position(buf.position() + skipped)
+        return skipped.toLong()
+    }
+
+    override fun available(): Int = buf.remaining()
+}
@@ -0,0 +1,177 @@
+package org.organicdesign.testUtils.string
+
+import org.organicdesign.testUtils.string.StructuralDiff.Change
+import org.organicdesign.testUtils.string.StructuralDiff.Kind.CHANGED
+import org.organicdesign.testUtils.string.StructuralDiff.Kind.DELETED
+import org.organicdesign.testUtils.string.StructuralDiff.Kind.INSERTED
+import org.organicdesign.testUtils.string.StructuralDiff.Kind.MOVED
+import java.util.Arrays
+
+/**
+ * Finds what's different between two big Lists or Maps, so a failing test can say "row 81,234
+ * changed" instead of printing both collections.  Uses each item's equals() and hashCode() to
+ * match items up, so it takes roughly linear time: O(n log n) for Lists, O(n) for Maps.
+ */
+object CollectionDiff {
+
+    /**
+     * Compares two Lists.  After skipping the common beginning and end, each item in the first
+     * list is matched with an equal item in the second.  The longest run of matched items that
+     * are in the same order serve as anchors.  Other matched items are [StructuralDiff.Kind.MOVED].
+     * Unmatched items from the first list that sit between the same two anchors as unmatched
+     * items from the second are paired up as [StructuralDiff.Kind.CHANGED].  Any left over are
+     * [StructuralDiff.Kind.DELETED] or [StructuralDiff.Kind.INSERTED].
+     *
+     * Changes are sorted by their index in the first list (or where they'd be in it, for inserts).
+     */
+    @JvmStatic
+    fun diff(
+            list1: List<*>,
+            list2: List<*>
+    ): StructuralDiff {
+        // Everything below indexes by position, which is O(n) per item in a LinkedList.
+        val items1: List<*> = randomAccess(list1)
+        val items2: List<*> = randomAccess(list2)
+        val size1 = items1.size
+        val size2 = items2.size
+        var prefix = 0
+        while (prefix < size1 && prefix < size2 && items1[prefix] == items2[prefix]) {
+            prefix++
+        }
+        var suffix = 0
+        while ( (suffix < size1 - prefix) && (suffix < size2 - prefix) &&
+                (items1[size1 - 1 - suffix] == items2[size2 - 1 - suffix]) ) {
+            suffix++
+        }
+        val end1 = size1 - suffix
+        val end2 = size2 - suffix
+
+        // Where each item first appears in the middle of the second list, with a chain of next
+        // indices for repeated items.  Much lighter than a collection per item.
+        val firstPos: MutableMap<Any?, Int> = HashMap()
+        val nextPos = IntArray(end2 - prefix)
+        for (j in end2 - 1 downTo prefix) {
+            nextPos[j - prefix] = firstPos[items2[j]] ?: -1
+            firstPos[items2[j]] = j
+        }
+
+        // Match items in the first list with equal ones in the second, in order.  Indices go in
+        // IntArrays sized for the worst case, with a count of how many are used.
+        val matchedI = IntArray(end1 - prefix)
+        val matchedJ = IntArray(end1 - prefix)
+        var matchedCount = 0
+        val deleted = IntArray(end1 - prefix)
+        var deletedCount = 0
+        for (i in prefix until end1) {
+            val item = items1[i]
+            val j: Int? = firstPos[item]
+            if (j == null) {
+                deleted[deletedCount++] = i
+            } else {
+                matchedI[matchedCount] = i
+                matchedJ[matchedCount] = j
+                matchedCount++
+                val next = nextPos[j - prefix]
+                if (next < 0) {
+                    firstPos.remove(item)
+                } else {
+                    firstPos[item] = next
+                }
+            }
+        }
+        val inserted = IntArray(end2 - prefix - matchedCount)
+        val matched2 = BooleanArray(end2 - prefix)
+        for (k in 0 until matchedCount) {
+            matched2[matchedJ[k] - prefix] = true
+        }
+        var insertedCount = 0
+        for (j in prefix until end2) {
+            if (!matched2[j - prefix]) {
+                inserted[insertedCount++] = j
+            }
+        }
+
+        val anchors: BooleanArray = PatienceDiff.longestIncreasing(matchedJ, matchedCount)
+        val anchorI = IntArray(matchedCount)
+        val anchorJ = IntArray(matchedCount)
+        var anchorCount = 0
+        // Each change with where it belongs in the first list, for sorting.
+        val changes: MutableList<Pair<Int, Change>> = mutableListOf()
+        for (k in 0 until matchedCount) {
+            if (anchors[k]) {
+                anchorI[anchorCount] = matchedI[k]
+                anchorJ[anchorCount] = matchedJ[k]
+                anchorCount++
+            } else {
+                val i = matchedI[k]
+                changes.add(i to Change(MOVED, i, items1[i], matchedJ[k], items2[matchedJ[k]]))
+            }
+        }
+
+        // Pair up deletions and insertions in the same gap between anchors.  Both lists of
+        // indices are in order, so the gaps are too.
+        var d = 0
+        var n = 0
+        while (d < deletedCount || n < insertedCount) {
+            val gapD = if (d < deletedCount) gap(anchorI, anchorCount, deleted[d]) else Int.MAX_VALUE
+            val gapN = if (n < insertedCount) gap(anchorJ, anchorCount, inserted[n]) else Int.MAX_VALUE
+            if (gapD == gapN) {
+                val i = deleted[d]
+                changes.add(i to Change(CHANGED, i, items1[i], inserted[n], items2[inserted[n]]))
+                d++
+                n++
+            } else if (gapD < gapN) {
+                val i = deleted[d]
+                changes.add(i to Change(DELETED, i, items1[i], null, null))
+                d++
+            } else {
+                // An insert belongs just after the anchor before it.
+                val i = if (gapN == 0) prefix else anchorI[gapN - 1] + 1
+                changes.add(i to Change(INSERTED, null, null, inserted[n], items2[inserted[n]]))
+                n++
+            }
+        }
+        changes.sortBy { it.first }
+        return StructuralDiff(changes.map { it.second })
+    }
+
+    /**
+     * Compares two Maps by key.  Keys only in the first are [StructuralDiff.Kind.DELETED], keys
+     * only in the second are [StructuralDiff.Kind.INSERTED], and keys whose values aren't equal
+     * are [StructuralDiff.Kind.CHANGED].  Changes are in the iteration order of the first Map,
+     * followed by inserted keys in the iteration order of the second.
+     */
+    @JvmStatic
+    fun diff(
+            map1: Map<*, *>,
+            map2: Map<*, *>
+    ): StructuralDiff {
+        val changes: MutableList<Change> = mutableListOf()
+        for ((key, value1) in map1) {
+            if (!map2.containsKey(key)) {
+                changes.add(Change(DELETED, key, value1, null, null))
+            } else {
+                val value2 = map2[key]
+                if (value1 != value2) {
+                    changes.add(Change(CHANGED, key, value1, key, value2))
+                }
+            }
+        }
+        for ((key, value2) in map2) {
+            if (!map1.containsKey(key)) {
+                changes.add(Change(INSERTED, null, null, key, value2))
+            }
+        }
+        return StructuralDiff(changes)
+    }
+
+    /** The number of the first count sorted anchor indices that are less than idx. */
+    private fun gap(anchors: IntArray, count: Int, idx: Int): Int {
+        val found = Arrays.binarySearch(anchors, 0, count, idx)
+        return if (found >= 0) found else -(found + 1)
+    }
+
+    /** The list itself if it's fast to index, or else a copy that is. */
+    private fun randomAccess(list: List<*>): List<*> =
+            if (list is RandomAccess) list else ArrayList(list)
+}
@@ -0,0 +1,32 @@
+package org.organicdesign.testUtils.string
+
+import org.organicdesign.indented.IndentedStringable
+import org.organicdesign.indented.StringUtils.fieldsOnOneLineK
+
+/**
+ * One changed region found by [StringDiff.diff]: the text [first] starting at character
+ * [start1] of the first string was replaced by [second] starting at character [start2] of the
+ * second string.  An empty first means an insertion, an empty second means a deletion.
+ */
+data class DiffHunk(
+    val start1: Int,
+    val first: String,
+    val start2: Int,
+    val second: String
+) : IndentedStringable {
+
+    /** The character just past the end of this hunk in the first string. */
+    fun end1(): Int = start1 + first.length
+
+    /** The character just past the end of this hunk in the second string. */
+    fun end2(): Int = start2 + second.length
+
+    override fun indentedStr(indent: Int, singleLine: Boolean): String =
+        fieldsOnOneLineK(indent, "DiffHunk",
+                         listOf("" to start1,
+                                "" to first,
+                                "" to start2,
+                                "" to second))
+
+    override fun toString(): String = indentedStr(0)
+}
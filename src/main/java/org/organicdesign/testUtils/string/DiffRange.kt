@@ -0,0 +1,124 @@
+package org.organicdesign.testUtils.string
+
+import org.organicdesign.indented.IndentedStringable
+import org.organicdesign.indented.StringUtils.fieldsOnOneLineK
+
+/**
+ * Like [DiffResult], but holds offsets into the original CharSequences instead of copies of the
+ * differing parts.  Making one costs nothing beyond finding the offsets, and toString() shows at
+ * most [context] characters on either side of each difference and at most [maxLength] characters
+ * of the difference itself, so a failed assertion on huge inputs doesn't allocate or print
+ * megabytes.
+ *
+ * Equality compares the offsets and the differing text, but not the surrounding text.
+ *
+ * @param s1 the first string
+ * @param start1 index of the first different char in s1
+ * @param end1 index just past the last different char in s1
+ * @param s2 the second string
+ * @param start2 index of the first different char in s2
+ * @param end2 index just past the last different char in s2
+ * @param context characters to show before and after each difference in toString()
+ * @param maxLength most characters of each difference to show in toString()
+ */
+class DiffRange @JvmOverloads constructor(
+    val s1: CharSequence,
+    val start1: Int,
+    val end1: Int,
+    val s2: CharSequence,
+    val start2: Int,
+    val end2: Int,
+    val context: Int = DEFAULT_CONTEXT,
+    val maxLength: Int = DEFAULT_MAX_LENGTH
+) : IndentedStringable {
+
+    init {
+        require(start1 in 0..end1 && end1 <= s1.length) { "Invalid range in s1: $start1 until $end1" }
+        require(start2 in 0..end2 && end2 <= s2.length) { "Invalid range in s2: $start2 until $end2" }
+        require(context >= 0) { "context must not be negative" }
+        require(maxLength >= 0) { "maxLength must not be negative" }
+    }
+
+    fun isIdentical(): Boolean = (start1 == end1) && (start2 == end2)
+
+    /** Copies the different part of the first string. */
+    fun first(): String = s1.subSequence(start1, end1).toString()
+
+    /** Copies the different part of the second string. */
+    fun second(): String = s2.subSequence(start2, end2).toString()
+
+    /** Copies the different parts into a [DiffResult]. */
+    fun toDiffResult(): DiffResult =
+        if (isIdentical()) {
+            DiffResult.IDENTICAL
+        } else {
+            DiffResult(first(), second())
+        }
+
+    /** Returns a copy that shows a different amount of text in toString(). */
+    fun withContext(newContext: Int, newMaxLength: Int): DiffRange =
+        DiffRange(s1, start1, end1, s2, start2, end2, newContext, newMaxLength)
+
+    override fun equals(other: Any?): Boolean =
+        (this === other) ||
+        ( (other is DiffRange) &&
+          (start1 == other.start1) &&
+          (end1 == other.end1) &&
+          (start2 == other.start2) &&
+          (end2 == other.end2) &&
+          regionEquals(s1, start1, other.s1, other.start1, end1 - start1) &&
+          regionEquals(s2, start2, other.s2, other.start2, end2 - start2) )
+
+    override fun hashCode(): Int =
+        ((start1 * 31 + end1) * 31 + start2) * 31 + end2
+
+    override fun indentedStr(indent: Int, singleLine: Boolean): String =
+        if (isIdentical()) {
+            "IDENTICAL"
+        } else {
+            fieldsOnOneLineK(indent, "DiffRange",
+                             listOf("" to start1,
+                                    "" to snippet(s1, start1, end1),
+                                    "" to start2,
+                                    "" to snippet(s2, start2, end2)))
+        }
+
+    override fun toString(): String = indentedStr(0)
+
+    /** Shows the difference in [brackets] with some context on either side. */
+    private fun snippet(s: CharSequence, start: Int, end: Int): String {
+        val sB = StringBuilder()
+        val from = maxOf(0, start - context)
+        if (from > 0) {
+            sB.append("...")
+        }
+        sB.append(s, from, start).append('[')
+        if (end - start <= maxLength) {
+            sB.append(s, start, end)
+        } else {
+            sB.append(s, start, start + maxLength)
+                    .append("...(").append(end - start - maxLength).append(" more)")
+        }
+        sB.append(']')
+        val to = minOf(s.length, end + context)
+        sB.append(s, end, to)
+        if (to < s.length) {
+            sB.append("...")
+        }
+        return sB.toString()
+    }
+
+    companion object {
+        const val DEFAULT_CONTEXT = 20
+        const val DEFAULT_MAX_LENGTH = 200
+
+        private fun regionEquals(a: CharSequence, aStart: Int, b: CharSequence, bStart: Int, len: Int): Boolean {
+            for (i in 0 until len) {
+                if (a[aStart + i] != b[bStart + i]) {
+                    return false
+                }
+            }
+            return true
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.organicdesign.testUtils.string
+
+/**
+ * A baseline string split into lines, with each line hashed to an int id once.  Pass it to
+ * [StringDiff.diff] to compare one expected output against many candidates without splitting and
+ * hashing the baseline again each time.  Immutable, so it can be shared between threads.
+ */
+class HashedLines(val text: String) {
+    private val lineIds: Map<String, Int>
+    internal val tokens: StringDiff.Tokens
+
+    init {
+        val ids: MutableMap<String, Int> = HashMap()
+        tokens = StringDiff.tokenizeLines(text, 0, text.length) { line -> ids.getOrPut(line) { ids.size } }
+        lineIds = ids
+    }
+
+    fun lineCount(): Int = tokens.ids.size
+
+    /** Splits and hashes other the same way.  Lines that aren't in the baseline get new ids. */
+    internal fun tokenize(other: String): StringDiff.Tokens {
+        val extra: MutableMap<String, Int> = HashMap()
+        return StringDiff.tokenizeLines(other, 0, other.length) { line ->
+            lineIds[line] ?: extra.getOrPut(line) { lineIds.size + extra.size }
+        }
+    }
+
+    override fun toString(): String = "HashedLines(${lineCount()} lines)"
+}
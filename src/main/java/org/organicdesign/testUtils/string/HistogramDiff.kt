@@ -0,0 +1,91 @@
+package org.organicdesign.testUtils.string
+
+import org.organicdesign.testUtils.string.Myers.Edit
+
+/**
+ * Histogram diff (as in git and JGit) on arrays of token ids.  Finds the longest matching region
+ * around the tokens that occur least often in the first range, splits there, and diffs each
+ * side the same way.  Ranges where every shared token is too common fall back to [Myers].
+ */
+internal object HistogramDiff {
+    /** Tokens occurring more often than this in a range aren't used as anchors. */
+    private const val MAX_CHAIN = 64
+
+    fun diff(a: IntArray, b: IntArray): List<Edit> {
+        val edits: MutableList<Edit> = mutableListOf()
+        // Ranges still to diff, as aLo, aHi, bLo, bHi.  A stack instead of recursion so a long
+        // chain of splits can't overflow, with the leftmost range on top to keep edits in order.
+        val todo: ArrayList<IntArray> = arrayListOf(intArrayOf(0, a.size, 0, b.size))
+        while (todo.isNotEmpty()) {
+            val range = todo.removeAt(todo.size - 1)
+            var aLo = range[0]
+            var aHi = range[1]
+            var bLo = range[2]
+            var bHi = range[3]
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++
+                bLo++
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--
+                bHi--
+            }
+            if (aLo == aHi || bLo == bHi) {
+                if (aLo < aHi || bLo < bHi) {
+                    Myers.addEdit(edits, Edit(aLo, aHi, bLo, bHi))
+                }
+                continue
+            }
+
+            // Where each token occurs in the first range
+            val positions: MutableMap<Int, MutableList<Int>> = HashMap()
+            for (i in aLo until aHi) {
+                positions.getOrPut(a[i]) { mutableListOf() }.add(i)
+            }
+
+            var bestCount = MAX_CHAIN + 1
+            var bestA = -1
+            var bestB = -1
+            var bestLen = 0
+            var j = bLo
+            while (j < bHi) {
+                val occurrences: List<Int>? = positions[b[j]]
+                var nextJ = j + 1
+                if (occurrences != null && occurrences.size <= bestCount) {
+                    for (i in occurrences) {
+                        // Grow the matching region around (i, j) as far as it goes.
+                        var startA = i
+                        var startB = j
+                        while (startA > aLo && startB > bLo && a[startA - 1] == b[startB - 1]) {
+                            startA--
+                            startB--
+                        }
+                        var endA = i + 1
+                        var endB = j + 1
+                        while (endA < aHi && endB < bHi && a[endA] == b[endB]) {
+                            endA++
+                            endB++
+                        }
+                        val len = endA - startA
+                        if (occurrences.size < bestCount || len > bestLen) {
+                            bestCount = occurrences.size
+                            bestA = startA
+                            bestB = startB
+                            bestLen = len
+                        }
+                        // Everything in this region has been considered along with it.
+                        nextJ = maxOf(nextJ, endB)
+                    }
+                }
+                j = nextJ
+            }
+            if (bestA < 0) {
+                Myers.diff(a, aLo, aHi, b, bLo, bHi, edits)
+                continue
+            }
+            todo.add(intArrayOf(bestA + bestLen, aHi, bestB + bestLen, bHi))
+            todo.add(intArrayOf(aLo, bestA, bLo, bestB))
+        }
+        return edits
+    }
+}
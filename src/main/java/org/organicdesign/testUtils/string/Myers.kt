@@ -0,0 +1,175 @@
+package org.organicdesign.testUtils.string
+
+/**
+ * Eugene Myers' O(ND) difference algorithm, in the linear-space "middle snake" form.  Works on
+ * arrays of ints so that the same code can diff characters, lines, or anything else that has been
+ * turned into token ids.  Time is O((N + M) * D) where D is the number of edits, which is near
+ * linear when two large inputs only differ a little.  Space is O(N + M).
+ *
+ * Based on the description in "An O(ND) Difference Algorithm and Its Variations" (Myers, 1986)
+ * and the bisect step in Neil Fraser's diff-match-patch.
+ */
+internal object Myers {
+
+    /**
+     * A changed region: tokens aStart until aEnd of the first array were replaced by tokens
+     * bStart until bEnd of the second.  One range or the other may be empty.
+     */
+    internal data class Edit(
+            val aStart: Int,
+            val aEnd: Int,
+            val bStart: Int,
+            val bEnd: Int
+    )
+
+    /** Returns the changed regions in order, with adjacent changes merged. */
+    fun diff(a: IntArray, b: IntArray): List<Edit> {
+        val edits: MutableList<Edit> = mutableListOf()
+        diff(a, 0, a.size, b, 0, b.size, edits)
+        return edits
+    }
+
+    /** Diffs a[aLo until aHi] against b[bLo until bHi], appending changes to edits. */
+    internal fun diff(
+            a: IntArray, aLo: Int, aHi: Int,
+            b: IntArray, bLo: Int, bHi: Int,
+            edits: MutableList<Edit>
+    ) {
+        var aStart = aLo
+        var bStart = bLo
+        var aEnd = aHi
+        var bEnd = bHi
+        // Common prefix and suffix are cheap to find and usually most of the input.
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+            aStart++
+            bStart++
+        }
+        while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+            aEnd--
+            bEnd--
+        }
+        if (aStart == aEnd && bStart == bEnd) {
+            return
+        }
+        if (aStart == aEnd || bStart == bEnd) {
+            addEdit(edits, Edit(aStart, aEnd, bStart, bEnd))
+            return
+        }
+        val split: IntArray? = middleSnake(a, aStart, aEnd, b, bStart, bEnd)
+        if (split == null) {
+            addEdit(edits, Edit(aStart, aEnd, bStart, bEnd))
+            return
+        }
+        diff(a, aStart, split[0], b, bStart, split[1], edits)
+        diff(a, split[0], aEnd, b, split[1], bEnd, edits)
+    }
+
+    /** Adds edit to the end of edits, merging it with the last one if they touch. */
+    internal fun addEdit(edits: MutableList<Edit>, edit: Edit) {
+        if (edits.isNotEmpty()) {
+            val prev = edits[edits.size - 1]
+            if (prev.aEnd == edit.aStart && prev.bEnd == edit.bStart) {
+                edits[edits.size - 1] = Edit(prev.aStart, edit.aEnd, prev.bStart, edit.bEnd)
+                return
+            }
+        }
+        edits.add(edit)
+    }
+
+    /**
+     * Walks the edit graph forward from the top-left and backward from the bottom-right at the
+     * same time until the paths overlap.  Returns the point (in a and b) where they met, which
+     * splits the problem into two smaller ones, or null if the ranges have nothing in common.
+     */
+    private fun middleSnake(
+            a: IntArray, aLo: Int, aHi: Int,
+            b: IntArray, bLo: Int, bHi: Int
+    ): IntArray? {
+        val n = aHi - aLo
+        val m = bHi - bLo
+        val maxD = (n + m + 1) / 2
+        val vOffset = maxD
+        val vLength = 2 * maxD + 2
+        val v1 = IntArray(vLength) { -1 }
+        val v2 = IntArray(vLength) { -1 }
+        v1[vOffset + 1] = 0
+        v2[vOffset + 1] = 0
+        val delta = n - m
+        // If the total number of tokens is odd, the front path will collide with the reverse path.
+        val front = (delta % 2 != 0)
+        // Offsets for start and end of k loop.  Prevents mapping of space beyond the grid.
+        var k1start = 0
+        var k1end = 0
+        var k2start = 0
+        var k2end = 0
+        for (d in 0 until maxD) {
+            // Walk the front path one step.
+            var k1 = -d + k1start
+            while (k1 <= d - k1end) {
+                val k1Offset = vOffset + k1
+                var x1 = if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1])) {
+                    v1[k1Offset + 1]
+                } else {
+                    v1[k1Offset - 1] + 1
+                }
+                var y1 = x1 - k1
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1++
+                    y1++
+                }
+                v1[k1Offset] = x1
+                if (x1 > n) {
+                    // Ran off the right of the graph.
+                    k1end += 2
+                } else if (y1 > m) {
+                    // Ran off the bottom of the graph.
+                    k1start += 2
+                } else if (front) {
+                    val k2Offset = vOffset + delta - k1
+                    if (k2Offset >= 0 && k2Offset < vLength && v2[k2Offset] != -1) {
+                        // Mirror x2 onto top-left coordinate system.
+                        val x2 = n - v2[k2Offset]
+                        if (x1 >= x2) {
+                            return intArrayOf(aLo + x1, bLo + y1)
+                        }
+                    }
+                }
+                k1 += 2
+            }
+
+            // Walk the reverse path one step.
+            var k2 = -d + k2start
+            while (k2 <= d - k2end) {
+                val k2Offset = vOffset + k2
+                var x2 = if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1])) {
+                    v2[k2Offset + 1]
+                } else {
+                    v2[k2Offset - 1] + 1
+                }
+                var y2 = x2 - k2
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    x2++
+                    y2++
+                }
+                v2[k2Offset] = x2
+                if (x2 > n) {
+                    k2end += 2
+                } else if (y2 > m) {
+                    k2start += 2
+                } else if (!front) {
+                    val k1Offset = vOffset + delta - k2
+                    if (k1Offset >= 0 && k1Offset < vLength && v1[k1Offset] != -1) {
+                        val x1 = v1[k1Offset]
+                        val y1 = vOffset + x1 - k1Offset
+                        // Mirror x2 onto top-left coordinate system.
+                        if (x1 >= n - x2) {
+                            return intArrayOf(aLo + x1, bLo + y1)
+                        }
+                    }
+                }
+                k2 += 2
+            }
+        }
+        return null
+    }
+}
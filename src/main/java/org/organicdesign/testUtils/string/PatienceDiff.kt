@@ -0,0 +1,118 @@
+package org.organicdesign.testUtils.string
+
+import org.organicdesign.testUtils.string.Myers.Edit
+
+/**
+ * Bram Cohen's patience diff on arrays of token ids.  Tokens that appear exactly once in each
+ * range and are in the same order in both become anchors.  The ranges between anchors are
+ * diffed the same way, and ranges with no unique tokens fall back to [Myers].
+ */
+internal object PatienceDiff {
+
+    fun diff(a: IntArray, b: IntArray): List<Edit> {
+        val edits: MutableList<Edit> = mutableListOf()
+        // Ranges still to diff, as aLo, aHi, bLo, bHi.  A stack instead of recursion so a long
+        // chain of splits can't overflow, with the leftmost range on top to keep edits in order.
+        val todo: ArrayList<IntArray> = arrayListOf(intArrayOf(0, a.size, 0, b.size))
+        while (todo.isNotEmpty()) {
+            val range = todo.removeAt(todo.size - 1)
+            var aLo = range[0]
+            var aHi = range[1]
+            var bLo = range[2]
+            var bHi = range[3]
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++
+                bLo++
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--
+                bHi--
+            }
+            if (aLo == aHi || bLo == bHi) {
+                if (aLo < aHi || bLo < bHi) {
+                    Myers.addEdit(edits, Edit(aLo, aHi, bLo, bHi))
+                }
+                continue
+            }
+
+            // Index of each token if it's unique in its range, or -1 if it repeats.
+            val uniqueA: MutableMap<Int, Int> = HashMap()
+            for (i in aLo until aHi) {
+                uniqueA[a[i]] = if (uniqueA.containsKey(a[i])) -1 else i
+            }
+            val uniqueB: MutableMap<Int, Int> = HashMap()
+            for (j in bLo until bHi) {
+                uniqueB[b[j]] = if (uniqueB.containsKey(b[j])) -1 else j
+            }
+            val matchedA: MutableList<Int> = mutableListOf()
+            val matchedB: MutableList<Int> = mutableListOf()
+            for (i in aLo until aHi) {
+                if (uniqueA[a[i]] == i) {
+                    val j: Int? = uniqueB[a[i]]
+                    if (j != null && j >= 0) {
+                        matchedA.add(i)
+                        matchedB.add(j)
+                    }
+                }
+            }
+            if (matchedA.isEmpty()) {
+                Myers.diff(a, aLo, aHi, b, bLo, bHi, edits)
+                continue
+            }
+
+            val anchors: BooleanArray = longestIncreasing(matchedB)
+            val ranges: MutableList<IntArray> = mutableListOf()
+            var prevA = aLo
+            var prevB = bLo
+            for (k in matchedA.indices) {
+                if (anchors[k]) {
+                    ranges.add(intArrayOf(prevA, matchedA[k], prevB, matchedB[k]))
+                    prevA = matchedA[k] + 1
+                    prevB = matchedB[k] + 1
+                }
+            }
+            ranges.add(intArrayOf(prevA, aHi, prevB, bHi))
+            for (k in ranges.indices.reversed()) {
+                todo.add(ranges[k])
+            }
+        }
+        return edits
+    }
+
+    fun longestIncreasing(xs: List<Int>): BooleanArray = longestIncreasing(xs.toIntArray(), xs.size)
+
+    /**
+     * Marks one longest strictly increasing subsequence of the first size items of xs using
+     * patience sorting in O(n log n).
+     */
+    fun longestIncreasing(xs: IntArray, size: Int): BooleanArray {
+        // tails[len] is the index in xs of the smallest value ending an increasing run of len + 1
+        val tails = IntArray(size)
+        val prev = IntArray(size)
+        var len = 0
+        for (k in 0 until size) {
+            var lo = 0
+            var hi = len
+            while (lo < hi) {
+                val mid = (lo + hi) ushr 1
+                if (xs[tails[mid]] < xs[k]) {
+                    lo = mid + 1
+                } else {
+                    hi = mid
+                }
+            }
+            prev[k] = if (lo > 0) tails[lo - 1] else -1
+            tails[lo] = k
+            if (lo == len) {
+                len++
+            }
+        }
+        val ret = BooleanArray(size)
+        var k = if (len > 0) tails[len - 1] else -1
+        while (k >= 0) {
+            ret[k] = true
+            k = prev[k]
+        }
+        return ret
+    }
+}
@@ -0,0 +1,207 @@
+package org.organicdesign.testUtils.string
+
+import org.organicdesign.indented.IndentedStringable
+import org.organicdesign.indented.StringUtils.fieldsOnOneLineK
+import java.io.InputStream
+import java.io.InputStreamReader
+import java.io.Reader
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.Arrays
+
+/**
+ * Compares two streams of characters of any size without reading either one into memory.
+ * Matching stretches are skipped a buffer at a time.  At each mismatch, up to a window of
+ * characters is read ahead from both streams and diffed with Myers' algorithm (like
+ * [StringDiff.diff] at [StringDiff.Granularity.CHAR]) to find where they line up again.  Memory
+ * use is proportional to the window and context sizes, not the streams.
+ *
+ * If the streams don't line up again within the window, that difference is reported with
+ * [Difference.truncated] set and the comparison stops.
+ */
+object StreamDiff {
+
+    /**
+     * One difference between the streams.
+     *
+     * @param start1 character offset of [first] in the first stream
+     * @param first the text from the first stream
+     * @param start2 character offset of [second] in the second stream
+     * @param second the text from the second stream
+     * @param before up to context characters just before the difference in the first stream
+     * @param after up to context characters just after the difference in the first stream
+     * @param truncated true if the streams didn't line up again within the window, so first and
+     * second were cut off and the comparison stopped.
+     */
+    data class Difference(
+            val start1: Long,
+            val first: String,
+            val start2: Long,
+            val second: String,
+            val before: String,
+            val after: String,
+            val truncated: Boolean
+    ) : IndentedStringable {
+        override fun indentedStr(indent: Int, singleLine: Boolean): String =
+                fieldsOnOneLineK(indent, "Difference",
+                                 listOf("start1" to start1,
+                                        "first" to first,
+                                        "start2" to start2,
+                                        "second" to second,
+                                        "before" to before,
+                                        "after" to after,
+                                        "truncated" to truncated))
+
+        override fun toString(): String = indentedStr(0)
+    }
+
+    /**
+     * Compares two Readers.  Neither is closed.
+     *
+     * @param r1 the first (expected) characters
+     * @param r2 the second (actual) characters
+     * @param maxDifferences stop after finding this many differences
+     * @param context how many characters of context to keep before and after each difference
+     * @param window how far to read ahead to find where the streams line up again after a mismatch
+     * @param onDifference called with each difference as soon as it's found
+     * @return the differences found, in order.  Empty if the streams are equal.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun diff(
+            r1: Reader,
+            r2: Reader,
+            maxDifferences: Int = 10,
+            context: Int = 40,
+            window: Int = 8192,
+            onDifference: (Difference) -> Unit = {}
+    ): List<Difference> {
+        require(maxDifferences > 0) { "maxDifferences must be positive" }
+        require(context >= 0) { "context must not be negative" }
+        require(window > 0) { "window must be positive" }
+
+        val s1 = Side(r1, context, window)
+        val s2 = Side(r2, context, window)
+        val ret: MutableList<Difference> = mutableListOf()
+        while (ret.size < maxDifferences) {
+            // Skip the matching part a buffer at a time.
+            s1.fill(1)
+            s2.fill(1)
+            val n = minOf(s1.available(), s2.available())
+            if (n == 0 && s1.available() == 0 && s2.available() == 0) {
+                break
+            }
+            val mismatch = if (n == 0) {
+                0
+            } else {
+                Arrays.mismatch(s1.buf, s1.pos, s1.pos + n, s2.buf, s2.pos, s2.pos + n)
+            }
+            if (mismatch < 0) {
+                s1.advance(n)
+                s2.advance(n)
+                continue
+            }
+            s1.advance(mismatch)
+            s2.advance(mismatch)
+
+            // Read ahead and find where they line up again.
+            s1.fill(window)
+            s2.fill(window)
+            val a = s1.tokens(window)
+            val b = s2.tokens(window)
+            val edits: List<Myers.Edit> = Myers.diff(a, b)
+            val edit: Myers.Edit = edits[0]
+            val truncated = ( (edit.aEnd == a.size) && (a.size == window) ) ||
+                            ( (edit.bEnd == b.size) && (b.size == window) )
+            val afterEnd = minOf(edit.aEnd + context,
+                                 if (edits.size > 1) edits[1].aStart else a.size)
+            val diff = Difference(s1.offset + edit.aStart, s1.string(edit.aStart, edit.aEnd),
+                                  s2.offset + edit.bStart, s2.string(edit.bStart, edit.bEnd),
+                                  s1.before(), s1.string(edit.aEnd, maxOf(edit.aEnd, afterEnd)),
+                                  truncated)
+            ret.add(diff)
+            onDifference(diff)
+            if (truncated) {
+                break
+            }
+            s1.advance(edit.aEnd)
+            s2.advance(edit.bEnd)
+        }
+        return ret
+    }
+
+    /** Compares two InputStreams by decoding them with the given charset.  Neither is closed. */
+    @JvmStatic
+    @JvmOverloads
+    fun diff(
+            in1: InputStream,
+            in2: InputStream,
+            charset: Charset = UTF_8,
+            maxDifferences: Int = 10,
+            context: Int = 40,
+            window: Int = 8192,
+            onDifference: (Difference) -> Unit = {}
+    ): List<Difference> =
+            diff(InputStreamReader(in1, charset), InputStreamReader(in2, charset),
+                 maxDifferences, context, window, onDifference)
+
+    /**
+     * A buffer over one Reader that keeps up to context characters before the current position
+     * and can read ahead up to window characters after it.
+     */
+    private class Side(
+            private val reader: Reader,
+            private val context: Int,
+            window: Int
+    ) {
+        val buf = CharArray(context + window + READ_SIZE)
+        /** Index in buf of the current position. */
+        var pos = 0
+        /** Index in buf just past the last character read. */
+        private var limit = 0
+        /** Offset in the stream of the current position. */
+        var offset = 0L
+        private var eof = false
+
+        fun available(): Int = limit - pos
+
+        /** Reads until at least n characters are available or the Reader is exhausted. */
+        fun fill(n: Int) {
+            while (!eof && available() < n) {
+                if (limit == buf.size) {
+                    // Slide what we're keeping to the front of the buffer.
+                    val keepFrom = maxOf(0, pos - context)
+                    System.arraycopy(buf, keepFrom, buf, 0, limit - keepFrom)
+                    pos -= keepFrom
+                    limit -= keepFrom
+                }
+                val count = reader.read(buf, limit, buf.size - limit)
+                if (count < 0) {
+                    eof = true
+                } else {
+                    limit += count
+                }
+            }
+        }
+
+        fun advance(n: Int) {
+            pos += n
+            offset += n
+        }
+
+        fun tokens(max: Int): IntArray = IntArray(minOf(max, available())) { buf[pos + it].code }
+
+        /** Characters from the current position plus start until plus end. */
+        fun string(start: Int, end: Int): String = String(buf, pos + start, end - start)
+
+        /** The context before the current position. */
+        fun before(): String {
+            val from = maxOf(0, pos - context)
+            return String(buf, from, pos - from)
+        }
+
+        companion object {
+            private const val READ_SIZE = 8192
+        }
+    }
+}
@@ -1,8 +1,26 @@
 package org.organicdesign.testUtils.string
 
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.READ
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinPool.commonPool
+import java.util.concurrent.RecursiveTask
+import java.util.concurrent.atomic.AtomicInteger
+
 object StringDiff {
 
-    // TODO: Make this work with actual Unicode characters instead of the weird way Strings work today.
+    /** What [diff] treats as one unit when comparing. */
+    enum class Granularity {
+        /** Whole lines, including their line terminator.  Best for big documents. */
+        LINE,
+        /** Individual chars.  Finds the smallest edits, but is slower on big, very different inputs. */
+        CHAR
+    }
+
     /**
      * Takes two strings and returns the different middle section which could be
      *  - Two empty strings (no difference)
@@ -10,62 +28,544 @@ object StringDiff {
      *  - Two strings (the changed part).
      *
      *  This works by finding exact matches from the beginning and the end of the string, then returning
-     *  everything inbetween.
+     *  everything inbetween.  The different middle never starts or ends in the middle of a surrogate pair,
+     *  so it's made of whole Unicode code points.
      */
     @JvmStatic
     fun differentMiddle(
             s1: String,
             s2: String
-    ): DiffResult {
+    ): DiffResult = differentMiddleRange(s1, s2).toDiffResult()
+
+    /**
+     * Finds the same different middle as [differentMiddle], but returns a [DiffRange] of offsets
+     * into the original strings instead of copying the different parts.  Its toString() shows
+     * only context characters around each difference and at most maxLength characters of it.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun differentMiddleRange(
+            s1: CharSequence,
+            s2: CharSequence,
+            context: Int = DiffRange.DEFAULT_CONTEXT,
+            maxLength: Int = DiffRange.DEFAULT_MAX_LENGTH
+    ): DiffRange {
+        val s1Len = s1.length
+        val s2Len = s2.length
+        val minLen = minOf(s1Len, s2Len)
         var firstDiffIdx = 0
+        while ( (firstDiffIdx < minLen) &&
+                (s1[firstDiffIdx] == s2[firstDiffIdx]) ) {
+            firstDiffIdx++
+        }
+        firstDiffIdx = codePointPrefix(s1, s2, firstDiffIdx)
+        // Find similar part at end of string, without overlapping the similar beginning.
+        var suffix = 0
+        val maxSuffix = minLen - firstDiffIdx
+        while ( (suffix < maxSuffix) &&
+                (s1[s1Len - 1 - suffix] == s2[s2Len - 1 - suffix]) ) {
+            suffix++
+        }
+        suffix = codePointSuffix(s1, s2, suffix)
+        return DiffRange(s1, firstDiffIdx, s1Len - suffix,
+                         s2, firstDiffIdx, s2Len - suffix,
+                         context, maxLength)
+    }
+
+    /** Shortens a common prefix so it doesn't end between the two halves of a surrogate pair. */
+    private fun codePointPrefix(s1: CharSequence, s2: CharSequence, prefix: Int): Int =
+            if ( (prefix > 0) &&
+                 Character.isHighSurrogate(s1[prefix - 1]) &&
+                 ( ((prefix < s1.length) && Character.isLowSurrogate(s1[prefix])) ||
+                   ((prefix < s2.length) && Character.isLowSurrogate(s2[prefix])) ) ) {
+                prefix - 1
+            } else {
+                prefix
+            }
+
+    /** Shortens a common suffix so it doesn't start between the two halves of a surrogate pair. */
+    private fun codePointSuffix(s1: CharSequence, s2: CharSequence, suffix: Int): Int {
+        val end1 = s1.length - suffix
+        val end2 = s2.length - suffix
+        return if ( (suffix > 0) &&
+                    Character.isLowSurrogate(s1[end1]) &&
+                    ( ((end1 > 0) && Character.isHighSurrogate(s1[end1 - 1])) ||
+                      ((end2 > 0) && Character.isHighSurrogate(s2[end2 - 1])) ) ) {
+            suffix - 1
+        } else {
+            suffix
+        }
+    }
+
+    /** Chunks smaller than this aren't split any further when scanning in parallel. */
+    private const val PARALLEL_CHUNK: Int = 1 shl 20
+
+    /** Chars compared between checks of whether another chunk already found a closer difference. */
+    private const val COMPARE_BLOCK: Int = 1 shl 13
+
+    /**
+     * Returns the same result as [differentMiddle], but finds the common prefix and suffix by
+     * splitting the strings into chunks and comparing them char by char on a ForkJoinPool, without
+     * copying.  Once a difference is found, chunks farther from the end being scanned are cancelled
+     * or stop after their current block, so strings that differ near the start (or end) aren't
+     * scanned all the way through.  This is for very
+     * large, nearly identical strings (snapshot tests of hundreds of MB) where the char-by-char scan
+     * is the bottleneck.  On small strings it's just overhead.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun differentMiddleParallel(
+            s1: String,
+            s2: String,
+            pool: ForkJoinPool = commonPool()
+    ): DiffResult = differentMiddleParallel(s1, s2, pool, PARALLEL_CHUNK)
+
+    internal fun differentMiddleParallel(
+            s1: String,
+            s2: String,
+            pool: ForkJoinPool,
+            chunk: Int
+    ): DiffResult {
         val s1Len = s1.length
         val s2Len = s2.length
-        while (
-                (firstDiffIdx < s1Len) &&
-                (firstDiffIdx < s2Len)
-        ) {
-//            println("firstDiffIdx: $firstDiffIdx")
-
-            // If this char is different:
-            if (s1[firstDiffIdx] != s2[firstDiffIdx]) {
-//                println("Different! ${s1[firstDiffIdx]} != ${s2[firstDiffIdx]}")
-                var lastDiffIdxS1 = s1Len - 1
-                var lastDiffIdxS2 = s2Len - 1
-                // Find similar part at end of string
-                while (
-                        (lastDiffIdxS1 >= firstDiffIdx) &&
-                        (lastDiffIdxS2 >= firstDiffIdx)
-                ) {
-
-//                    println("lastDiffIdxS1 = $lastDiffIdxS1 lastDiffIdxS2 = $lastDiffIdxS2")
-//                    println("Reverse diff: ${s1[lastDiffIdxS1]} vs. ${s2[lastDiffIdxS2]}")
-
-                    // Found similar part at end of string - return different middle
-                    if (s1[lastDiffIdxS1] != s2[lastDiffIdxS2]) {
-//                        println("Only middle was different")
-                        return DiffResult(s1.substring(firstDiffIdx, lastDiffIdxS1 + 1),
-                                          s2.substring(firstDiffIdx, lastDiffIdxS2 + 1))
+        val minLen = minOf(s1Len, s2Len)
+        val firstDiff = pool.invoke(PrefixTask(s1, s2, 0, minLen, chunk, AtomicInteger(Int.MAX_VALUE)))
+        val prefix = codePointPrefix(s1, s2, if (firstDiff < 0) minLen else firstDiff)
+        // Like the sequential version, the suffix can't overlap the prefix.
+        val maxSuffix = minLen - prefix
+        val lastDiff = if (maxSuffix == 0) {
+            -1
+        } else {
+            pool.invoke(SuffixTask(s1, s2, 0, maxSuffix, chunk, AtomicInteger(Int.MAX_VALUE)))
+        }
+        val suffix = codePointSuffix(s1, s2, if (lastDiff < 0) maxSuffix else lastDiff)
+        return DiffRange(s1, prefix, s1Len - suffix, s2, prefix, s2Len - suffix).toDiffResult()
+    }
+
+    /**
+     * Returns the index of the first different char between lo and hi, or -1 if they all match.
+     * Also returns -1 once it passes the lowest difference any task has put in found, because the
+     * answer is then in an earlier chunk.
+     */
+    private class PrefixTask(
+            private val s1: String,
+            private val s2: String,
+            private val lo: Int,
+            private val hi: Int,
+            private val chunk: Int,
+            private val found: AtomicInteger
+    ) : RecursiveTask<Int>() {
+        override fun compute(): Int {
+            if (hi - lo > chunk) {
+                val mid = (lo + hi) ushr 1
+                val far = PrefixTask(s1, s2, mid, hi, chunk, found)
+                far.fork()
+                val nearIdx: Int = PrefixTask(s1, s2, lo, mid, chunk, found).compute()
+                if (nearIdx >= 0) {
+                    // If far hasn't started, it never will.  If it has, it stops at its next block.
+                    far.cancel(false)
+                    return nearIdx
+                }
+                return far.join()
+            }
+            var idx = lo
+            while ( (idx < hi) && (idx < found.get()) ) {
+                val n = minOf(COMPARE_BLOCK, hi - idx)
+                val end = idx + n
+                while (idx < end) {
+                    if (s1[idx] != s2[idx]) {
+                        found.accumulateAndGet(idx, ::minOf)
+                        return idx
                     }
+                    idx++
+                }
+            }
+            return -1
+        }
+    }
 
-                    lastDiffIdxS1 -= 1
-                    lastDiffIdxS2 -= 1
+    /**
+     * Compares the strings backward from their ends, for distances from the end between lo and
+     * hi.  Returns the smallest distance from the end where they differ, or -1 if they all match.
+     * Like [PrefixTask], it gives up with -1 once it passes a smaller distance in found.
+     */
+    private class SuffixTask(
+            private val s1: String,
+            private val s2: String,
+            private val lo: Int,
+            private val hi: Int,
+            private val chunk: Int,
+            private val found: AtomicInteger
+    ) : RecursiveTask<Int>() {
+        override fun compute(): Int {
+            if (hi - lo > chunk) {
+                val mid = (lo + hi) ushr 1
+                val far = SuffixTask(s1, s2, mid, hi, chunk, found)
+                far.fork()
+                val nearIdx: Int = SuffixTask(s1, s2, lo, mid, chunk, found).compute()
+                if (nearIdx >= 0) {
+                    far.cancel(false)
+                    return nearIdx
                 }
+                return far.join()
+            }
+            var dist = lo
+            while ( (dist < hi) && (dist < found.get()) ) {
+                val n = minOf(COMPARE_BLOCK, hi - dist)
+                val end = dist + n
+                while (dist < end) {
+                    if (s1[s1.length - 1 - dist] != s2[s2.length - 1 - dist]) {
+                        found.accumulateAndGet(dist, ::minOf)
+                        return dist
+                    }
+                    dist++
+                }
+            }
+            return -1
+        }
+    }
+
+    /** Size of each memory-mapped window when comparing files. */
+    private const val MAP_WINDOW: Long = 1L shl 26 // 64MB
+
+    /** Size of the blocks compared when searching backward for the last difference. */
+    private const val BLOCK: Int = 1 shl 16
+
+    /**
+     * Like [differentMiddle] for two UTF-8 files, but without reading them into Strings.  Both
+     * files are memory-mapped a window at a time and compared with bulk [ByteBuffer.mismatch]
+     * from the front and then from the back.  Only the differing region is decoded, and its ends
+     * are moved out to whole characters so a multi-byte character is never split.  Comparing two
+     * identical files costs about the time it takes to read them and almost no heap.
+     */
+    @JvmStatic
+    fun differentMiddle(
+            path1: Path,
+            path2: Path
+    ): DiffResult = differentMiddle(path1, path2, MAP_WINDOW)
+
+    internal fun differentMiddle(
+            path1: Path,
+            path2: Path,
+            window: Long
+    ): DiffResult =
+            FileChannel.open(path1, READ).use { c1 ->
+                FileChannel.open(path2, READ).use { c2 ->
+                    val size1 = c1.size()
+                    val size2 = c2.size()
+                    val minSize = minOf(size1, size2)
+                    var start = firstMismatch(c1, c2, minSize, window)
+                    if (start == minSize && size1 == size2) {
+                        return DiffResult.IDENTICAL
+                    }
+                    // The bytes before start are the same in both files, and so are the bytes
+                    // from the ends on, so a character boundary in one is a boundary in the other.
+                    val oneByte = ByteBuffer.allocate(1)
+                    while ( (start > 0) &&
+                            (isContinuation(c1, start, size1, oneByte) ||
+                             isContinuation(c2, start, size2, oneByte)) ) {
+                        start--
+                    }
+                    val suffix = commonSuffix(c1, size1, c2, size2, minSize - start, window)
+                    var end1 = size1 - suffix
+                    var end2 = size2 - suffix
+                    while ( (end1 < size1) && isContinuation(c1, end1, size1, oneByte) ) {
+                        end1++
+                        end2++
+                    }
+                    DiffResult(decode(c1, start, end1), decode(c2, start, end2))
+                }
+            }
+
+    private fun map(c: FileChannel, pos: Long, len: Long): MappedByteBuffer =
+            c.map(FileChannel.MapMode.READ_ONLY, pos, len)
+
+    /** Returns the index of the first differing byte, or len if the first len bytes match. */
+    private fun firstMismatch(c1: FileChannel, c2: FileChannel, len: Long, window: Long): Long {
+        var pos = 0L
+        while (pos < len) {
+            val n = minOf(window, len - pos)
+            val idx = map(c1, pos, n).mismatch(map(c2, pos, n))
+            if (idx >= 0) {
+                return pos + idx
+            }
+            pos += n
+        }
+        return len
+    }
 
-                // Whole end of string was similar
-//                println("Whole end of string was similar")
-                return  DiffResult(s1.substring(firstDiffIdx, lastDiffIdxS1 + 1),
-                                   s2.substring(firstDiffIdx, lastDiffIdxS2 + 1))
+    /** Returns the number of matching bytes at the ends of the files, at most maxLen. */
+    private fun commonSuffix(
+            c1: FileChannel,
+            size1: Long,
+            c2: FileChannel,
+            size2: Long,
+            maxLen: Long,
+            window: Long
+    ): Long {
+        var matched = 0L
+        while (matched < maxLen) {
+            val n = minOf(window, maxLen - matched)
+            val b1 = map(c1, size1 - matched - n, n)
+            val b2 = map(c2, size2 - matched - n, n)
+            if (b1.mismatch(b2) < 0) {
+                matched += n
+                continue
             }
-            firstDiffIdx += 1
+            return matched + (n - 1 - lastMismatch(b1, b2))
         }
-        return if (s1Len == s2Len) {
-//            println("no diff")
-            DiffResult.IDENTICAL
+        return matched
+    }
+
+    /**
+     * Returns the index (from position) of the last byte that differs between two buffers with
+     * the same number of bytes remaining, or -1 if they match.  Compares a block at a time from
+     * the end with the bulk [ByteBuffer.mismatch].
+     */
+    private fun lastMismatch(buf1: ByteBuffer, buf2: ByteBuffer): Int {
+        val b1 = buf1.slice()
+        val b2 = buf2.slice()
+        var blockEnd = b1.remaining()
+        while (blockEnd > 0) {
+            val blockStart = maxOf(0, blockEnd - BLOCK)
+            if (region(b1, blockStart, blockEnd).mismatch(region(b2, blockStart, blockEnd)) >= 0) {
+                var i = blockEnd - 1
+                while (b1.get(i) == b2.get(i)) {
+                    i--
+                }
+                return i
+            }
+            blockEnd = blockStart
+        }
+        return -1
+    }
+
+    /**
+     * Like [differentMiddle] for two UTF-8 encoded byte arrays, such as servlet response bodies.
+     * Only the differing region is decoded.  Its ends are moved out to character boundaries so a
+     * multi-byte character is never split.
+     */
+    @JvmStatic
+    fun differentMiddle(
+            bytes1: ByteArray,
+            bytes2: ByteArray
+    ): DiffResult = differentMiddle(ByteBuffer.wrap(bytes1), ByteBuffer.wrap(bytes2))
+
+    /**
+     * Like [differentMiddle] for the remaining bytes of two UTF-8 encoded ByteBuffers.  Only the
+     * differing region is decoded.  Its ends are moved out to character boundaries so a
+     * multi-byte character is never split.  Doesn't change the position or limit of either buffer.
+     */
+    @JvmStatic
+    fun differentMiddle(
+            bytes1: ByteBuffer,
+            bytes2: ByteBuffer
+    ): DiffResult {
+        val b1 = bytes1.slice()
+        val b2 = bytes2.slice()
+        val size1 = b1.remaining()
+        val size2 = b2.remaining()
+        val minSize = minOf(size1, size2)
+        val firstDiff = region(b1, 0, minSize).mismatch(region(b2, 0, minSize))
+        var start = if (firstDiff < 0) minSize else firstDiff
+        if (start == minSize && size1 == size2) {
+            return DiffResult.IDENTICAL
+        }
+        // The bytes before start are the same in both, and so are the bytes from the ends on, so
+        // a character boundary in one is a boundary in the other.
+        while ( (start > 0) && (isContinuation(b1, start) || isContinuation(b2, start)) ) {
+            start--
+        }
+        val maxSuffix = minSize - start
+        val lastDiff = lastMismatch(region(b1, size1 - maxSuffix, size1),
+                                    region(b2, size2 - maxSuffix, size2))
+        val suffix = if (lastDiff < 0) maxSuffix else maxSuffix - 1 - lastDiff
+        var end1 = size1 - suffix
+        var end2 = size2 - suffix
+        while ( (end1 < size1) && isContinuation(b1, end1) ) {
+            end1++
+            end2++
+        }
+        return DiffResult(UTF_8.decode(region(b1, start, end1)).toString(),
+                          UTF_8.decode(region(b2, start, end2)).toString())
+    }
+
+    /** True if the byte at pos is a UTF-8 continuation byte (10xxxxxx), false if it's past the end. */
+    private fun isContinuation(b: ByteBuffer, pos: Int): Boolean =
+            (pos < b.limit()) && ((b.get(pos).toInt() and 0xC0) == 0x80)
+
+    // ByteBuffer.slice(index, length) is Java 13+
+    private fun region(b: ByteBuffer, from: Int, to: Int): ByteBuffer =
+            b.duplicate().position(from).limit(to)
+
+    /** True if the byte at pos is a UTF-8 continuation byte (10xxxxxx), false if it's past the end. */
+    private fun isContinuation(c: FileChannel, pos: Long, size: Long, oneByte: ByteBuffer): Boolean {
+        if (pos >= size) {
+            return false
+        }
+        oneByte.clear()
+        c.read(oneByte, pos)
+        return (oneByte.get(0).toInt() and 0xC0) == 0x80
+    }
+
+    private fun decode(c: FileChannel, start: Long, end: Long): String {
+        require(end - start <= Int.MAX_VALUE) { "Differing region is too big to fit in a String" }
+        return if (start == end) {
+            ""
         } else {
-//            println("returning")
-            return DiffResult(s1.substring(firstDiffIdx),
-                              s2.substring(firstDiffIdx))
+            UTF_8.decode(map(c, start, end - start)).toString()
+        }
+    }
+
+    /** How [diff] matches up lines (or chars). */
+    enum class Algorithm {
+        /** Myers' O(ND) algorithm.  Finds the smallest set of changes. */
+        MYERS,
+        /**
+         * Patience diff.  Anchors on lines that appear exactly once in both strings, then diffs
+         * between the anchors.  When lines repeat a lot (braces, blank lines, log prefixes) the
+         * hunks follow the real edits instead of lining up unrelated repeated lines.
+         */
+        PATIENCE,
+        /**
+         * Histogram diff, as in git and JGit.  Like patience, but anchors on the longest matching
+         * region around the rarest lines, so it still finds anchors when no line is unique.
+         */
+        HISTOGRAM
+    }
+
+    /**
+     * Finds the changes between two strings.  Unlike [differentMiddle], two small edits far
+     * apart in a large document come back as two small hunks instead of everything between them.
+     * With the default [Algorithm.MYERS], time is about linear in the length of the strings when
+     * the differences are small, and memory is linear.
+     *
+     * @param s1 the first (expected) string
+     * @param s2 the second (actual) string
+     * @param granularity compare by [Granularity.LINE] (the default) or [Granularity.CHAR]
+     * @param algorithm how to match up lines or chars.  See [Algorithm].
+     * @return the changed regions in order, or an empty list if the strings are equal.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun diff(
+            s1: String,
+            s2: String,
+            granularity: Granularity = Granularity.LINE,
+            algorithm: Algorithm = Algorithm.MYERS
+    ): List<DiffHunk> {
+        // Skip the common prefix and suffix with a cheap char-by-char scan before tokenizing.
+        val s1Len = s1.length
+        val s2Len = s2.length
+        var prefix = 0
+        val maxPrefix = minOf(s1Len, s2Len)
+        while (prefix < maxPrefix && s1[prefix] == s2[prefix]) {
+            prefix++
+        }
+        if (prefix == s1Len && prefix == s2Len) {
+            return listOf()
         }
+        var suffix = 0
+        val maxSuffix = maxPrefix - prefix
+        while (suffix < maxSuffix && s1[s1Len - 1 - suffix] == s2[s2Len - 1 - suffix]) {
+            suffix++
+        }
+        var end1 = s1Len - suffix
+        var end2 = s2Len - suffix
+
+        if (granularity == Granularity.CHAR) {
+            return hunks(s1, Tokens(IntArray(end1 - prefix) { s1[prefix + it].code }, prefix, null),
+                         s2, Tokens(IntArray(end2 - prefix) { s2[prefix + it].code }, prefix, null),
+                         algorithm)
+        }
+
+        // Widen the middle to whole lines.  The prefix and suffix are common, so moving
+        // both ends the same distance into them lands on the same boundary in both strings.
+        while (prefix > 0 && s1[prefix - 1] != '\n') {
+            prefix--
+        }
+        while ( !isLineStart(s1, end1) || !isLineStart(s2, end2) ) {
+            end1++
+            end2++
+        }
+        val ids: MutableMap<String, Int> = HashMap()
+        val idOf: (String) -> Int = { line -> ids.getOrPut(line) { ids.size } }
+        return hunks(s1, tokenizeLines(s1, prefix, end1, idOf),
+                     s2, tokenizeLines(s2, prefix, end2, idOf),
+                     algorithm)
     }
 
-}
\ No newline at end of file
+    /**
+     * Compares a baseline that has already been split into lines and hashed against another
+     * string, line by line.  Use this to compare one expected output against many candidates.
+     *
+     * @param baseline the first (expected) string, already hashed
+     * @param s2 the second (actual) string
+     * @param algorithm how to match up lines.  See [Algorithm].  The default is the same as for
+     * diff(String, String), so both give the same hunks for the same strings.
+     * @return the changed regions in order, or an empty list if the strings are equal.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun diff(
+            baseline: HashedLines,
+            s2: String,
+            algorithm: Algorithm = Algorithm.MYERS
+    ): List<DiffHunk> = hunks(baseline.text, baseline.tokens, s2, baseline.tokenize(s2), algorithm)
+
+    private fun hunks(
+            s1: String,
+            tokens1: Tokens,
+            s2: String,
+            tokens2: Tokens,
+            algorithm: Algorithm
+    ): List<DiffHunk> {
+        val edits: List<Myers.Edit> = when (algorithm) {
+            Algorithm.MYERS -> Myers.diff(tokens1.ids, tokens2.ids)
+            Algorithm.PATIENCE -> PatienceDiff.diff(tokens1.ids, tokens2.ids)
+            Algorithm.HISTOGRAM -> HistogramDiff.diff(tokens1.ids, tokens2.ids)
+        }
+        return edits.map { edit ->
+            val start1 = tokens1.offset(edit.aStart)
+            val start2 = tokens2.offset(edit.bStart)
+            DiffHunk(start1, s1.substring(start1, tokens1.offset(edit.aEnd)),
+                     start2, s2.substring(start2, tokens2.offset(edit.bEnd)))
+        }
+    }
+
+    private fun isLineStart(s: String, idx: Int): Boolean =
+            (idx == 0) || (idx >= s.length) || (s[idx - 1] == '\n')
+
+    /**
+     * A range of a string turned into token ids.  For lines, starts holds the offset of each
+     * line plus one for the end.  For chars it's null because the offset is just from + index.
+     */
+    internal class Tokens(
+            val ids: IntArray,
+            val from: Int,
+            val starts: IntArray?
+    ) {
+        fun offset(tokenIdx: Int): Int = starts?.get(tokenIdx) ?: (from + tokenIdx)
+    }
+
+    /** Splits s between from and to into lines (keeping the line endings) and gets an id for each. */
+    internal fun tokenizeLines(
+            s: String,
+            from: Int,
+            to: Int,
+            idOf: (String) -> Int
+    ): Tokens {
+        val starts: MutableList<Int> = mutableListOf()
+        var idx = from
+        while (idx < to) {
+            starts.add(idx)
+            val nl = s.indexOf('\n', idx)
+            idx = if (nl < 0 || nl >= to) to else nl + 1
+        }
+        starts.add(to)
+        val lineIds = IntArray(starts.size - 1) {
+            idOf(s.substring(starts[it], starts[it + 1]))
+        }
+        return Tokens(lineIds, from, starts.toIntArray())
+    }
+}
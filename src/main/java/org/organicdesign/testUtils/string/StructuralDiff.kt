@@ -0,0 +1,101 @@
+package org.organicdesign.testUtils.string
+
+import org.organicdesign.indented.IndentedStringable
+import org.organicdesign.indented.StringUtils.stringify
+
+/**
+ * The differences between two Lists or Maps found by [CollectionDiff].  Like [DiffResult] for
+ * collections: instead of printing both whole collections, toString() gives a count of each
+ * kind of change and shows only the first few, with each item shortened.
+ *
+ * @param changes every change found, in order of position (Lists) or iteration order (Maps).
+ * @param maxShown most changes to show in toString()
+ */
+data class StructuralDiff @JvmOverloads constructor(
+    val changes: List<Change>,
+    val maxShown: Int = DEFAULT_MAX_SHOWN
+) : IndentedStringable {
+
+    enum class Kind {
+        /** Only in the second collection. */
+        INSERTED,
+        /** Only in the first collection. */
+        DELETED,
+        /** In both Lists, but out of order relative to the items around it. */
+        MOVED,
+        /** A different item at the same place in a List, or a different value for a Map key. */
+        CHANGED
+    }
+
+    /**
+     * One change.
+     *
+     * @param kind what kind of change
+     * @param at1 index in the first List or the key in the first Map.  Null for [Kind.INSERTED].
+     * @param first the item from the first collection.  Null for [Kind.INSERTED].
+     * @param at2 index in the second List or the key in the second Map.  Null for [Kind.DELETED].
+     * @param second the item from the second collection.  Null for [Kind.DELETED].
+     */
+    data class Change(
+        val kind: Kind,
+        val at1: Any?,
+        val first: Any?,
+        val at2: Any?,
+        val second: Any?
+    ) : IndentedStringable {
+        override fun indentedStr(indent: Int, singleLine: Boolean): String =
+            when (kind) {
+                Kind.INSERTED -> "INSERTED [$at2] ${shorten(second)}"
+                Kind.DELETED -> "DELETED [$at1] ${shorten(first)}"
+                Kind.MOVED -> "MOVED [$at1] -> [$at2] ${shorten(first)}"
+                Kind.CHANGED -> "CHANGED [$at1] ${shorten(first)} -> [$at2] ${shorten(second)}"
+            }
+
+        override fun toString(): String = indentedStr(0)
+    }
+
+    fun isIdentical(): Boolean = changes.isEmpty()
+
+    fun count(kind: Kind): Int = changes.count { it.kind == kind }
+
+    /** Returns a copy that shows a different number of changes in toString(). */
+    fun withMaxShown(newMaxShown: Int): StructuralDiff = StructuralDiff(changes, newMaxShown)
+
+    override fun indentedStr(indent: Int, singleLine: Boolean): String {
+        if (changes.isEmpty()) {
+            return "IDENTICAL"
+        }
+        val sB = StringBuilder("StructuralDiff(")
+        Kind.values().joinTo(sB, ", ") { "${it.name.lowercase()}=${count(it)}" }
+        val pad = " ".repeat(indent + 4)
+        for (change in changes.take(maxShown)) {
+            sB.append(",\n").append(pad).append(change.indentedStr(indent + 4))
+        }
+        if (changes.size > maxShown) {
+            sB.append(",\n").append(pad).append("...and ").append(changes.size - maxShown).append(" more")
+        }
+        return sB.append(")").toString()
+    }
+
+    override fun toString(): String = indentedStr(0)
+
+    companion object {
+        const val DEFAULT_MAX_SHOWN = 10
+
+        /** Items are shortened to this many characters in toString(). */
+        const val MAX_ITEM_LENGTH = 80
+
+        private fun shorten(item: Any?): String {
+            val s = when (item) {
+                is String -> stringify(item)
+                is IndentedStringable -> item.indentedStr(0, true)
+                else -> item.toString()
+            }
+            return if (s.length <= MAX_ITEM_LENGTH) {
+                s
+            } else {
+                s.substring(0, MAX_ITEM_LENGTH) + "..."
+            }
+        }
+    }
+}
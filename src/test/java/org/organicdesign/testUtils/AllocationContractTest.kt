@@ -0,0 +1,57 @@
+package org.organicdesign.testUtils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.organicdesign.testUtils.AllocationContract.bytesPerCall
+import org.organicdesign.testUtils.AllocationContract.compareToAllocation
+import org.organicdesign.testUtils.AllocationContract.equalsHashCodeAllocation
+import org.organicdesign.testUtils.http.Kv
+
+class AllocationContractTest {
+
+    @Test
+    fun testNoAllocation() {
+        equalsHashCodeAllocation(Kv("Accept", "text/html"),
+                                 Kv("Accept", "text/html"),
+                                 Kv("Accept", "text/plain"))
+        compareToAllocation("Hello", String(charArrayOf('H', 'e', 'l', 'l', 'o')), "World")
+    }
+
+    internal class Wasteful(private val i: Int) : Comparable<Wasteful> {
+        // Escapes to the heap, so escape analysis can't eliminate it.
+        @Volatile
+        private var scratch: IntArray = IntArray(0)
+
+        override fun equals(other: Any?): Boolean = other is Wasteful && i == other.i
+
+        override fun hashCode(): Int {
+            scratch = IntArray(8)
+            return i
+        }
+
+        override fun compareTo(other: Wasteful): Int {
+            scratch = IntArray(8)
+            return i.compareTo(other.i)
+        }
+    }
+
+    @Test
+    fun testAllocation() {
+        val ae: AssertionError = assertThrows {
+            equalsHashCodeAllocation(Wasteful(1), Wasteful(1), Wasteful(2))
+        }
+        assertTrue(ae.message!!.startsWith("hashCode() allocated "))
+
+        // A budget that's big enough
+        equalsHashCodeAllocation(Wasteful(1), Wasteful(1), Wasteful(2), 1000.0)
+
+        val ae2: AssertionError = assertThrows {
+            compareToAllocation(Wasteful(1), Wasteful(1), Wasteful(2))
+        }
+        assertTrue(ae2.message!!.startsWith("compareTo() of equal objects allocated "))
+
+        val w = Wasteful(3)
+        assertTrue(bytesPerCall({ w.hashCode() }) >= 32.0)
+    }
+}
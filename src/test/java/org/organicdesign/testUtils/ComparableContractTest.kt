@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.assertThrows
 import org.organicdesign.indented.StringUtils.stringify
 import org.organicdesign.testUtils.ComparableContract.testCompareTo
+import org.organicdesign.testUtils.ComparableContract.testCompareToSampled
 import java.util.*
 
 class ComparableContractTest {
@@ -217,4 +218,53 @@ class ComparableContractTest {
         assertEquals("Least A should have the same hashcode as its paired B element",
                      ae.message)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testSampled() {
+        testCompareToSampled({ r -> r.nextInt(100) })
+        testCompareToSampled({ r -> Dumbo(r.nextInt(10), r.nextInt(10).toString()) }, 100_000)
+        testCompareToSampled({ r -> r.nextInt(3).toString() }, 0)
+    }
+
+    // Rock, paper, scissors
+    internal class Rps(private val i: Int) : Comparable<Rps> {
+        override fun equals(other: Any?): Boolean = other is Rps && i == other.i
+        override fun hashCode(): Int = i
+        override fun compareTo(other: Rps): Int =
+            when ((i - other.i + 3) % 3) {
+                0 -> 0
+                1 -> 1
+                else -> -1
+            }
+        override fun toString(): String = "Rps($i)"
+    }
+
+    @Test
+    fun testSampledIntransitive() {
+        val ae: AssertionError = assertThrows {
+            testCompareToSampled({ r -> Rps(r.nextInt(3)) }, 1_000_000, 17L)
+        }
+        assertTrue(ae.message!!.startsWith("compareTo() is not transitive: "))
+        assertTrue(ae.message!!.endsWith("(seed=17)"))
+
+        // Same seed, same counterexample.
+        val ae2: AssertionError = assertThrows {
+            testCompareToSampled({ r -> Rps(r.nextInt(3)) }, 1_000_000, 17L)
+        }
+        assertEquals(ae.message, ae2.message)
+    }
+
+    @Test
+    fun testSampledInconsistentWithEquals() {
+        val ae: AssertionError = assertThrows {
+            testCompareToSampled({ r -> SortSameEqDiff(r.nextInt(5)) })
+        }
+        assertTrue(ae.message!!.startsWith("a.compareTo(b) == 0 must agree with a.equals(b)") ||
+                   ae.message!!.startsWith("a.equals(a) must be true"))
+
+        val ae2: AssertionError = assertThrows {
+            testCompareToSampled({ r -> SortSameBadHash(r.nextInt(5)) })
+        }
+        assertTrue(ae2.message!!.startsWith("a and b compare as equal so must have the same hashCode"))
+    }
+}
@@ -2,9 +2,15 @@ package org.organicdesign.testUtils;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 
-import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.organicdesign.testUtils.ComparatorContract.findOrderViolation;
+import static org.organicdesign.testUtils.ComparatorContract.testTotalOrder;
 
 /**
  Created by Glen K. Peterson on 3/28/17.
@@ -53,4 +59,76 @@ public class ComparatorContractTest {
         assertThrowsExactly(AssertionError.class,
                             () -> ComparatorContract.testComparator(27, 100, 375, badComp));
     }
-}
\ No newline at end of file
+
+    private static List<Integer> randomInts(int size, int bound) {
+        Random rand = new Random(20220318L);
+        List<Integer> ints = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ints.add(bound == 0 ? rand.nextInt() : rand.nextInt(bound));
+        }
+        return ints;
+    }
+
+    @Test
+    public void testTotalOrderGood() {
+        testTotalOrder(randomInts(1_000_000, 0), Integer::compare);
+        // Lots of duplicates
+        testTotalOrder(randomInts(100_000, 50), Integer::compare);
+        testTotalOrder(new ArrayList<Integer>(), Integer::compare);
+        testTotalOrder(Arrays.asList("b", "a", "c", "a"), String::compareTo);
+    }
+
+    @Test
+    public void testOverflowingSubtraction() {
+        // The classic mistake: a - b overflows for values far apart.
+        Comparator<Integer> badComp = (a, b) -> a - b;
+        List<Integer> triple = findOrderViolation(randomInts(100_000, 0), badComp);
+        assertNotNull(triple);
+        assertEquals(3, triple.size());
+        int a = triple.get(0);
+        int b = triple.get(1);
+        int c = triple.get(2);
+        assertTrue(badComp.compare(a, b) <= 0);
+        assertTrue(badComp.compare(b, c) <= 0);
+        assertTrue(badComp.compare(a, c) >= 0);
+
+        AssertionError ae = assertThrows(AssertionError.class,
+                                         () -> testTotalOrder(randomInts(100_000, 0), badComp));
+        assertTrue(ae.getMessage().startsWith("Comparator is not transitive: "));
+    }
+
+    @Test
+    public void testFuzzyEquality() {
+        // "Close enough" equality is not transitive: 0 == 5 and 5 == 10, but 0 < 10
+        Comparator<Integer> fuzzy = (a, b) -> Math.abs(a - b) < 8 ? 0 : Integer.compare(a, b);
+        List<Integer> triple = findOrderViolation(randomInts(10_000, 10_000), fuzzy);
+        assertNotNull(triple);
+        assertEquals(3, triple.size());
+    }
+
+    @Test
+    public void testAntisymmetry() {
+        Comparator<Integer> alwaysOne = (a, b) -> a.equals(b) ? 0 : 1;
+        AssertionError ae = assertThrows(AssertionError.class,
+                                         () -> testTotalOrder(Arrays.asList(1, 2, 3), alwaysOne));
+        assertTrue(ae.getMessage().startsWith("comparator.compare(a, b) must have the opposite sign of"));
+
+        Comparator<Integer> neverZero = (a, b) -> -1;
+        ae = assertThrows(AssertionError.class,
+                          () -> testTotalOrder(Arrays.asList(1, 2, 3), neverZero));
+        assertEquals("comparator.compare(item, item) must return zero: 1", ae.getMessage());
+    }
+
+    @Test
+    public void testInconsistentOrder() {
+        // Sorts ascending, then answers in reverse, like a comparator that reads mutable state.
+        // Its answers are always antisymmetric, so this must not be reported as antisymmetry.
+        int[] calls = {0};
+        Comparator<Integer> flipping = (a, b) -> (++calls[0] <= 3) ? Integer.compare(a, b)
+                                                                   : Integer.compare(b, a);
+        AssertionError ae = assertThrows(AssertionError.class,
+                                         () -> testTotalOrder(Arrays.asList(2, 1), flipping));
+        assertEquals("Comparator is not a consistent order: a=1 b=2 compare(a, b)=1 compare(b, a)=-1" +
+                     " but earlier comparisons sorted a before b", ae.getMessage());
+    }
+}
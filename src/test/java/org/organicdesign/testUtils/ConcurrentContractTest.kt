@@ -0,0 +1,71 @@
+package org.organicdesign.testUtils
+
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.organicdesign.testUtils.ConcurrentContract.compareToConcurrently
+import org.organicdesign.testUtils.ConcurrentContract.equalsHashCodeConcurrently
+import org.organicdesign.testUtils.http.Kv
+
+class ConcurrentContractTest {
+
+    /** Caches its hashCode the way java.lang.String does, which is a benign race. */
+    internal class GoodCache(private val s: String) : Comparable<GoodCache> {
+        private var hash = 0
+
+        override fun equals(other: Any?): Boolean = other is GoodCache && s == other.s
+
+        override fun hashCode(): Int {
+            var h = hash
+            if (h == 0) {
+                h = s.hashCode()
+                hash = h
+            }
+            return h
+        }
+
+        override fun compareTo(other: GoodCache): Int = s.compareTo(other.s)
+    }
+
+    /** Publishes "computed" before the hash itself.  Another thread can see a hash of 0. */
+    internal class BadCache(private val s: String) : Comparable<BadCache> {
+        private var computed = false
+        private var hash = 0
+
+        override fun equals(other: Any?): Boolean = other is BadCache && s == other.s
+
+        override fun hashCode(): Int {
+            if (!computed) {
+                computed = true
+                // Simulate an expensive hash so that this fails even on a single core.
+                Thread.sleep(1)
+                hash = s.hashCode()
+            }
+            return hash
+        }
+
+        override fun compareTo(other: BadCache): Int = s.compareTo(other.s)
+    }
+
+    @Test
+    fun testGood() {
+        equalsHashCodeConcurrently({ listOf(Kv("a", "b"), Kv("a", "b"), Kv("a", "b"), Kv("b", "a")) })
+        equalsHashCodeConcurrently({ listOf(GoodCache("Hello"), GoodCache("Hello"), GoodCache("World")) })
+        compareToConcurrently({ listOf(GoodCache("A"), GoodCache("A"), GoodCache("B"), GoodCache("B")) },
+                              4, 200)
+    }
+
+    @Test
+    fun testBad() {
+        val ae: AssertionError = assertThrows {
+            equalsHashCodeConcurrently({ listOf(BadCache("Hello"), BadCache("Hello"), BadCache("World")) },
+                                       4, 100)
+        }
+        assertTrue(ae.message!!.contains("hashCode() returned 0 on thread "))
+
+        val ae2: AssertionError = assertThrows {
+            compareToConcurrently({ listOf(BadCache("A"), BadCache("B")) }, 4, 100)
+        }
+        assertTrue(ae2.message!!.contains("hashCode() returned 0 on thread "))
+    }
+}
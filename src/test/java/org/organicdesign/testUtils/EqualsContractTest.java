@@ -5,11 +5,15 @@ import org.organicdesign.testUtils.ComparableContractTest.SortSameBadHash;
 import org.organicdesign.testUtils.ComparableContractTest.SortSameEqNull;
 import org.organicdesign.testUtils.ComparableContractTest.SortSameNeSelf;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.organicdesign.testUtils.EqualsContract.equalsDistinctHashCode;
 import static org.organicdesign.testUtils.EqualsContract.equalsSameHashCode;
+import static org.organicdesign.testUtils.EqualsContract.equivalenceClasses;
 
 public class EqualsContractTest {
     static class Point2d {
@@ -190,4 +194,80 @@ public class EqualsContractTest {
         assertEquals("The different param must equal itself",
                      ae.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEquivalenceClasses() {
+        List<List<Object>> classes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // Point2d's hashCode is x + y, so plenty of these collide.  That's allowed.
+            classes.add(Arrays.asList(new Point2d(i % 25, i / 25),
+                                      new Point2d(i % 25, i / 25),
+                                      new Point2d(i % 25, i / 25)));
+        }
+        equivalenceClasses(classes);
+    }
+
+    @Test
+    public void testEquivalenceClassesUnequalAcrossClasses() {
+        List<List<Object>> classes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            classes.add(Arrays.asList(new Point2d(i, 0),
+                                      new Point2d(i, 0)));
+        }
+        classes.add(Arrays.asList(new Point2d(57, 0),
+                                  new Point2d(57, 0)));
+        AssertionError ae = assertThrows(AssertionError.class,
+                                         () -> equivalenceClasses(classes));
+        assertTrue(ae.getMessage().startsWith("Classes 57 and 100 must not be equal"));
+    }
+
+    /** "Close enough" equality, which isn't transitive. */
+    static class Fuzzy {
+        final int n;
+        Fuzzy(int theN) { n = theN; }
+
+        @Override public int hashCode() { return 0; }
+
+        @Override public boolean equals(Object o) {
+            return (o instanceof Fuzzy) && Math.abs(n - ((Fuzzy) o).n) <= 1;
+        }
+
+        @Override public String toString() { return "Fuzzy(" + n + ")"; }
+    }
+
+    @Test
+    public void testEquivalenceClassesNonTransitive() {
+        // Each class is equal within itself, and the first members are unequal to the other class,
+        // but the second members are equal to each other.
+        List<List<Object>> classes = Arrays.asList(Arrays.asList(new Fuzzy(0), new Fuzzy(1)),
+                                                   Arrays.asList(new Fuzzy(3), new Fuzzy(2)));
+        AssertionError ae = assertThrows(AssertionError.class,
+                                         () -> equivalenceClasses(classes));
+        assertEquals("Classes 0 and 1 must not be equal: Fuzzy(1) vs. Fuzzy(2)", ae.getMessage());
+    }
+
+    @Test
+    public void testEquivalenceClassesBadHash() {
+        List<List<Object>> classes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            classes.add(Arrays.asList(new User(i + 1, "Sally", 24),
+                                      new User(i + 1, "Sally", 24)));
+        }
+        classes.add(Arrays.asList(new SortSameBadHash(1),
+                                  new SortSameBadHash(1)));
+        AssertionError ae = assertThrows(AssertionError.class,
+                                         () -> equivalenceClasses(classes));
+        assertEquals("Found an unequal hashCode in class 100: a=SortSameBadHash(1) b=SortSameBadHash(1)",
+                     ae.getMessage());
+    }
+
+    @Test
+    public void testEquivalenceClassesSameObject() {
+        assertThrowsExactly(IllegalArgumentException.class,
+                            () -> equivalenceClasses(Arrays.asList(Arrays.asList(p2d, new Point2d(1, 2)),
+                                                                   Arrays.asList(sally, sally))));
+        assertThrowsExactly(IllegalArgumentException.class,
+                            () -> equivalenceClasses(Arrays.asList(Arrays.asList(p2d, new Point2d(1, 2)),
+                                                                   Arrays.asList())));
+    }
+}
@@ -0,0 +1,72 @@
+package org.organicdesign.testUtils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.organicdesign.testUtils.HashCodeDistribution.analyze
+import org.organicdesign.testUtils.HashCodeDistribution.analyzeHashes
+import org.organicdesign.testUtils.HashCodeDistribution.assertWellDistributed
+
+class HashCodeDistributionTest {
+
+    private class FixedHash(val i: Int, private val hash: Int) {
+        override fun equals(other: Any?): Boolean = other is FixedHash && i == other.i
+        override fun hashCode(): Int = hash
+    }
+
+    @Test
+    fun testTableSize() {
+        assertEquals(16, HashCodeDistribution.tableSizeFor(0))
+        assertEquals(16, HashCodeDistribution.tableSizeFor(12))
+        assertEquals(32, HashCodeDistribution.tableSizeFor(13))
+        assertEquals(131072, HashCodeDistribution.tableSizeFor(75000))
+    }
+
+    @Test
+    fun testGoodDistribution() {
+        val report = assertWellDistributed((0 until 100000).map { "item$it" })
+        assertEquals(100000, report.sampleSize)
+        assertEquals(0, report.treeifiedBuckets)
+        assertTrue(report.collisionRate() < 0.001)
+
+        // HashMap's spread function rescues hashes that only vary in the high bits.
+        assertWellDistributed((0 until 10000).map { FixedHash(it, it shl 16) })
+    }
+
+    @Test
+    fun testEmpty() {
+        val report = analyzeHashes(IntArray(0))
+        assertEquals(0.0, report.collisionRate())
+        assertEquals(0, report.occupiedBuckets)
+        assertEquals(0, report.longestChain)
+    }
+
+    @Test
+    fun testCollisions() {
+        // hashCode() = x + y, like EqualsContractTest.Point2d
+        val points = (0 until 10000).map { FixedHash(it, (it % 100) + (it / 100)) }
+        val report = analyze(points)
+        assertEquals(199, report.distinctHashes)
+        val ae: AssertionError = assertThrows { assertWellDistributed(points, 0.5) }
+        assertTrue(ae.message!!.contains("buckets would be converted to trees"))
+    }
+
+    @Test
+    fun testCollisionRate() {
+        // Every hash shared by exactly two items: chains of 2, but half the sample collides.
+        val pairs = (0 until 10000).map { FixedHash(it, it / 2) }
+        val ae: AssertionError = assertThrows { assertWellDistributed(pairs) }
+        assertTrue(ae.message!!.startsWith("hashCode collision rate 0.5 exceeds 0.01"))
+    }
+
+    @Test
+    fun testClusteredBuckets() {
+        // All unique, but spread() leaves the low three bits zero so 7/8ths of the table is empty.
+        val clustered = (0 until 8000).map { FixedHash(it, it shl 19) }
+        val report = analyze(clustered)
+        assertEquals(0.0, report.collisionRate())
+        assertEquals(2048, report.occupiedBuckets)
+        val ae: AssertionError = assertThrows { assertWellDistributed(clustered) }
+        assertTrue(ae.message!!.startsWith("Only 2048 of 16384 HashMap buckets used."))
+    }
+}
@@ -0,0 +1,119 @@
+package org.organicdesign.testUtils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.organicdesign.testUtils.SerializationScalability.assertScalable
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.Serializable
+
+class SerializationScalabilityTest {
+
+    /** Default serialization recurses once per node. */
+    class Node(val item: Int, val next: Node?) : Serializable {
+        companion object {
+            private const val serialVersionUID = 20220318L
+
+            fun chain(size: Int): Node? {
+                var head: Node? = null
+                for (i in size downTo 1) {
+                    head = Node(i, head)
+                }
+                return head
+            }
+        }
+    }
+
+    /** Writes its elements in a loop, the way java.util.LinkedList does. */
+    class FlatChain(@Transient var head: Node?) : Serializable {
+        private fun writeObject(out: ObjectOutputStream) {
+            var size = 0
+            var n = head
+            while (n != null) {
+                size++
+                n = n.next
+            }
+            out.writeInt(size)
+            n = head
+            while (n != null) {
+                out.writeInt(n.item)
+                n = n.next
+            }
+        }
+
+        private fun readObject(inStream: ObjectInputStream) {
+            val items = IntArray(inStream.readInt()) { inStream.readInt() }
+            var h: Node? = null
+            for (i in items.indices.reversed()) {
+                h = Node(items[i], h)
+            }
+            head = h
+        }
+
+        companion object {
+            private const val serialVersionUID = 20220318L
+        }
+    }
+
+    /**
+     * Looks up the index of each element with a linear search.  Searches an IntArray by hand rather
+     * than calling List.indexOf() so that the JIT compiles the loop the same way no matter what other
+     * tests ran first.
+     */
+    class Quadratic(@Transient var items: IntArray) : Serializable {
+        private fun writeObject(out: ObjectOutputStream) {
+            out.writeInt(items.size)
+            for (item in items) {
+                var idx = 0
+                while (items[idx] != item) {
+                    idx++
+                }
+                out.writeInt(idx)
+            }
+        }
+
+        private fun readObject(inStream: ObjectInputStream) {
+            items = IntArray(inStream.readInt()) { inStream.readInt() }
+        }
+
+        companion object {
+            private const val serialVersionUID = 20220318L
+        }
+    }
+
+    @Test
+    fun testLinear() {
+        val measurements = assertScalable({ n -> ArrayList((0 until n).map { "item$it" }) },
+                                          intArrayOf(1000, 2000, 4000, 8000, 16000))
+        assertEquals(5, measurements.size)
+        assertEquals(16000, measurements.last().size)
+        assertTrue(measurements.last().bytes > measurements.first().bytes)
+
+        assertScalable({ n -> FlatChain(Node.chain(n)) })
+    }
+
+    @Test
+    fun testStackOverflow() {
+        val ae: AssertionError = assertThrows {
+            assertScalable({ n -> Node.chain(n)!! })
+        }
+        assertTrue(ae.message!!.contains("overflowed the stack"))
+    }
+
+    // The default sizes would take minutes for a quadratic graph, but the default exponent catches it.
+    @Test
+    fun testQuadratic() {
+        val ae: AssertionError = assertThrows {
+            assertScalable({ n -> Quadratic(IntArray(n) { it }) },
+                           intArrayOf(2000, 4000, 8000, 16000, 32000))
+        }
+        assertTrue(ae.message!!.startsWith("Round-trip time grows like size^"))
+    }
+
+    @Test
+    fun testSizes() {
+        assertThrows<IllegalArgumentException> { assertScalable({ it }, intArrayOf(10)) }
+        assertThrows<IllegalArgumentException> { assertScalable({ it }, intArrayOf(20, 10)) }
+    }
+}
@@ -4,9 +4,12 @@ package org.organicdesign.testUtils;
 import org.junit.jupiter.api.Test;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.organicdesign.testUtils.Serialization.roundTrip;
+import static org.organicdesign.testUtils.Serialization.roundTripAll;
 import static org.organicdesign.testUtils.Serialization.serializeDeserialize;
 
 public class SerializationTest {
@@ -25,4 +28,41 @@ public class SerializationTest {
         assertEquals(hi.stuff, deserializedHi.stuff);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testRoundTrip() {
+        Hello hi = new Hello();
+        hi.stuff = "Hello World!";
+        RoundTrip<Hello> rt = roundTrip(hi);
+        assertNotSame(hi, rt.getResult());
+        assertEquals(hi.stuff, rt.getResult().stuff);
+        assertEquals(1, rt.getCount());
+        assertTrue(rt.getSerializedBytes() > hi.stuff.length());
+        assertTrue(rt.getSerializeNanos() > 0);
+        assertTrue(rt.getDeserializeNanos() > 0);
+        assertTrue(rt.getAllocatedBytes() > rt.getSerializedBytes());
+
+        RoundTrip<Hello> warm = roundTrip(hi, 10, 10);
+        assertEquals(rt.getSerializedBytes(), warm.getSerializedBytes());
+        assertEquals(hi.stuff, warm.getResult().stuff);
+
+        assertThrows(IllegalArgumentException.class, () -> roundTrip(hi, 0, 0));
+    }
+
+    @Test
+    public void testRoundTripAll() {
+        List<Hello> his = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Hello hi = new Hello();
+            hi.stuff = "Hello " + i;
+            his.add(hi);
+        }
+        RoundTrip<List<Hello>> rt = roundTripAll(his);
+        assertEquals(100, rt.getCount());
+        assertEquals(100, rt.getResult().size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Hello " + i, rt.getResult().get(i).stuff);
+        }
+        // The class descriptor is only written once per stream.
+        assertTrue(rt.bytesPerObject() < roundTrip(his.get(0)).getSerializedBytes());
+    }
+}
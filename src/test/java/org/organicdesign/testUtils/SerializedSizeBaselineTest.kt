@@ -0,0 +1,69 @@
+package org.organicdesign.testUtils
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import org.organicdesign.testUtils.SerializedSizeBaseline.UPDATE_PROPERTY
+import org.organicdesign.testUtils.SerializedSizeBaseline.assertSizes
+import java.io.Serializable
+import java.nio.file.Files
+import java.nio.file.Path
+
+class SerializedSizeBaselineTest {
+
+    class Small(val s: String) : Serializable {
+        companion object {
+            private const val serialVersionUID = 20220318L
+        }
+    }
+
+    @Test
+    fun testRecordAndCheck(@TempDir dir: Path) {
+        val file = dir.resolve("sizes.properties")
+        val sizes = assertSizes(file, mapOf("small" to Small("Hello"),
+                                            "list" to arrayListOf(1, 2, 3)))
+        assertTrue(Files.exists(file))
+        val lines = Files.readAllLines(file)
+        assertEquals("list=${sizes["list"]}", lines[2])
+        assertEquals("small=${sizes["small"]}", lines[3])
+
+        // Same sizes pass.  Slightly bigger passes within the tolerance.
+        assertSizes(file, mapOf("small" to Small("Hello")))
+        assertSizes(file, mapOf("small" to Small("Hello!")))
+
+        val ae: AssertionError = assertThrows {
+            assertSizes(file, mapOf("small" to Small("Hello".repeat(100)),
+                                    "list" to arrayListOf(1, 2, 3)))
+        }
+        assertTrue(ae.message!!.contains("small grew from ${sizes["small"]} to "))
+        assertFalse(ae.message!!.contains("list grew"))
+
+        // A bigger tolerance lets it through.
+        assertSizes(file, mapOf("small" to Small("Hello".repeat(100))), 10.0)
+
+        // New entries are recorded alongside the old ones.
+        assertSizes(file, mapOf("other" to Small("")))
+        assertEquals(5, Files.readAllLines(file).size)
+    }
+
+    @Test
+    fun testUpdate(@TempDir dir: Path) {
+        val file = dir.resolve("sub/sizes.properties")
+        assertSizes(file, mapOf("small" to Small("Hello")))
+        System.setProperty(UPDATE_PROPERTY, "true")
+        try {
+            assertSizes(file, mapOf("small" to Small("Hello".repeat(100))))
+        } finally {
+            System.clearProperty(UPDATE_PROPERTY)
+        }
+        assertSizes(file, mapOf("small" to Small("Hello".repeat(100))))
+    }
+
+    @Test
+    fun testBadName(@TempDir dir: Path) {
+        assertThrows<IllegalArgumentException> {
+            assertSizes(dir.resolve("sizes.properties"), mapOf("bad name" to Small("")))
+        }
+    }
+}
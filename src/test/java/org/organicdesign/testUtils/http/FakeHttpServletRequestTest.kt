@@ -120,12 +120,17 @@ class FakeHttpServletRequestTest {
         hsr.removeAttribute("attr1")
         assertNull(hsr.getAttribute("attr1"))
 
-        // Cookie doesn't have .equals() implemented.
+        // Cookie doesn't have .equals() implemented, and each request gets its own copies.
         val myCookie = Cookie("a", "b")
         myCookie.isHttpOnly = true
         myCookie.secure = true
-        assertArrayEquals(arrayOf(myCookie),
-                          ReqB().cookies(listOf(myCookie)).toReq().cookies)
+        val reqCookies = ReqB().cookies(listOf(myCookie)).toReq().cookies!!
+        assertEquals(1, reqCookies.size)
+        assertNotSame(myCookie, reqCookies[0])
+        assertEquals("a", reqCookies[0].name)
+        assertEquals("b", reqCookies[0].value)
+        assertTrue(reqCookies[0].isHttpOnly)
+        assertTrue(reqCookies[0].secure)
 
         assertEquals("FakeHttpServletRequest(url=\"https://domain.com\",\n" +
                      "                       remoteAddr=\"0:0:0:0:0:0:0:1\",\n" +
@@ -182,6 +187,73 @@ class FakeHttpServletRequestTest {
 
     }
 
+    @Test
+    fun testMultiValuedHeaders() {
+        val req = ReqB().headers(listOf(Kv("Accept", "text/html"),
+                                        Kv("X-Forwarded-For", "10.0.0.1"),
+                                        Kv("accept", "application/json"),
+                                        Kv("HOST", "example.com")))
+                .toReq()
+        assertEquals("text/html", req.getHeader("ACCEPT"))
+        assertEquals(listOf("text/html", "application/json"), req.getHeaders("Accept")!!.toList())
+        assertEquals(listOf("10.0.0.1"), req.getHeaders("x-forwarded-for")!!.toList())
+        assertFalse(req.getHeaders("Missing")!!.hasMoreElements())
+        assertNull(req.getHeader("Missing"))
+        assertNull(req.getHeader(null))
+
+        // A host header in any case counts, so the default isn't added.
+        assertEquals(listOf("Accept", "X-Forwarded-For", "accept", "HOST"), req.headerNames.toList())
+        assertEquals("example.com", req.serverName)
+    }
+
+    @Test
+    fun testTemplate() {
+        val reqB = ReqB.funDefaults().attributes(mutableMapOf("shared" to "yes"))
+        val template = reqB.freeze()
+        val req1 = template.toReq()
+        val req2 = template.toReq()
+
+        // Attributes are copied on the first change.
+        req1.setAttribute("mine", "1")
+        req1.removeAttribute("shared")
+        assertEquals("1", req1.getAttribute("mine"))
+        assertNull(req1.getAttribute("shared"))
+        assertNull(req2.getAttribute("mine"))
+        assertEquals("yes", req2.getAttribute("shared"))
+        assertEquals("yes", template.toReq().getAttribute("shared"))
+        assertEquals(mapOf<String, Any>("shared" to "yes"), reqB.attributes)
+
+        // Each request reads the whole body with its own cursor, and keeps it across calls.
+        val body1 = req1.inputStream!!
+        assertSame(body1, req1.inputStream)
+        val text = InputStreamReader(body1 as InputStream, Charsets.UTF_8).readText()
+        assertTrue(text.contains("coñteñt"))
+        assertEquals(text, InputStreamReader(req2.inputStream as InputStream, Charsets.UTF_8).readText())
+
+        // Changing the builder's cookie, or one request's cookie, doesn't change other requests.
+        val builderCookie = Cookie("session", "abc")
+        val cookieTemplate = ReqB().cookies(listOf(builderCookie)).freeze()
+        builderCookie.value = "edited later"
+        val cookieReq = cookieTemplate.toReq()
+        cookieReq.cookies!![0].value = "changed"
+        cookieReq.cookies!![0].maxAge = 0
+        assertEquals("changed", cookieReq.cookies!![0].value)
+        assertEquals("abc", cookieTemplate.toReq().cookies!![0].value)
+        assertEquals(-1, cookieTemplate.toReq().cookies!![0].maxAge)
+
+        // Changing the builder later doesn't change the template.
+        reqB.method("POST").headers(listOf())
+        assertEquals("GET", template.toReq().method)
+        assertEquals("keep-alive", template.toReq().getHeader("connection"))
+        assertEquals(listOf("v2a", "v2b", "v2c"), template.toReq().getParameterValues("k2")!!.toList())
+
+        // Many requests from one template on different threads.
+        val bodies = (0 until 1000).toList().parallelStream().map {
+            InputStreamReader(template.toReq().inputStream as InputStream, Charsets.UTF_8).readText()
+        }.toList()
+        assertTrue(bodies.all { it == text })
+    }
+
     /**
      * This is needed for file uploading.
      */
@@ -3,6 +3,9 @@ package org.organicdesign.testUtils.http
 import java.util.Locale.TRADITIONAL_CHINESE
 import org.organicdesign.testUtils.http.FakeHttpServletResponse.Companion.httpServletResponse
 import java.util.*
+import org.eclipse.jetty.http.DateGenerator.formatDate
+import kotlin.text.Charsets.ISO_8859_1
+import kotlin.text.Charsets.UTF_8
 import jakarta.servlet.http.Cookie
 import org.junit.jupiter.api.Assertions.*
 import org.junit.jupiter.api.Test
@@ -34,18 +37,18 @@ class FakeHttpServletResponseTest {
         assertEquals(setOf("Hello", "Buddy"),
                      hsr.headerNames)
 
-        // Cupcake should replace World (the first value for Hello).
+        // Cupcake should replace every value for Hello, like a real container.
         hsr.setHeader("Hello", "Cupcake")
-        assertEquals(listOf("Cupcake", "Pumpkin"),
+        assertEquals(listOf("Cupcake"),
                      hsr.getHeaders("Hello"))
         assertEquals("Cupcake", hsr.getHeader("Hello"))
 
         val timeL = Date().time
         hsr.setDateHeader("One", timeL)
-        assertEquals(timeL.toString(), hsr.getHeader("One"))
+        assertEquals(formatDate(timeL), hsr.getHeader("One"))
 
-        hsr.addDateHeader("One", timeL + 1)
-        assertEquals(listOf(timeL.toString(), (timeL + 1).toString()), hsr.getHeaders("One"))
+        hsr.addDateHeader("One", timeL + 1000)
+        assertEquals(listOf(formatDate(timeL), formatDate(timeL + 1000)), hsr.getHeaders("One"))
 
         hsr.setIntHeader("Two", 2)
         assertEquals(2.toString(), hsr.getHeader("Two"))
@@ -74,6 +77,8 @@ class FakeHttpServletResponseTest {
         assertEquals(404, hsr.status)
         assertEquals("text/html", hsr.contentType)
         assertTrue(hsr.isCommitted)
+        // The error page replaces whatever was buffered.
+        assertEquals(0, hsr.outputStream.size())
 
         assertNull(hsr.characterEncoding)
         hsr.setContentType("text/html;charset=UTF-8")
@@ -93,13 +98,12 @@ class FakeHttpServletResponseTest {
                      "                        locale=zh_TW,\n" +
                      "                        cookies=listOf(Cookie(\"cName\", \"cValue\")),\n" +
                      "                        headers=listOf(\"Hello\"=\"Cupcake\",\n" +
-                     "                                       \"Hello\"=\"Pumpkin\",\n" +
                      "                                       \"Buddy\"=\"Rich\",\n" +
-                     "                                       \"One\"=\"$timeL\",\n" +
-                     "                                       \"One\"=\"${timeL + 1}\",\n" +
+                     "                                       \"One\"=\"${formatDate(timeL)}\",\n" +
+                     "                                       \"One\"=\"${formatDate(timeL + 1000)}\",\n" +
                      "                                       \"Two\"=\"2\",\n" +
                      "                                       \"Two\"=\"3\"),\n" +
-                     "                        outputStream=FakeServletOutputStream(\"Hello World\"))",
+                     "                        outputStream=FakeServletOutputStream(\"\"))",
                      hsr.toString())
     }
 
@@ -112,6 +116,163 @@ class FakeHttpServletResponseTest {
         }
     }
 
+    @Test
+    fun testHeaders() {
+        val hsr = httpServletResponse()
+        val names = hsr.headerNames
+        hsr.addHeader("Content-Type", "text/plain")
+        hsr.addHeader("X-Custom", "a")
+        hsr.addHeader("x-custom", "b")
+        assertTrue(hsr.containsHeader("content-type"))
+        assertTrue(hsr.containsHeader("X-CUSTOM"))
+        assertEquals("text/plain", hsr.getHeader("CONTENT-TYPE"))
+        assertEquals(listOf("a", "b"), hsr.getHeaders("X-Custom"))
+        assertEquals(listOf<String>(), hsr.getHeaders("Missing"))
+        assertEquals(listOf<String>(), hsr.getHeaders(null))
+        assertFalse(hsr.containsHeader(null))
+
+        // The names are a live, read-only view
+        assertEquals(setOf("Content-Type", "X-Custom", "x-custom"), names)
+        assertThrows(UnsupportedOperationException::class.java) { (names as MutableCollection<String>).clear() }
+
+        // Setting with a different case replaces every value, and the name, where the first one was.
+        hsr.addHeader("Vary", "Accept")
+        hsr.setHeader("X-CUSTOM", "c")
+        assertEquals(listOf("c"), hsr.getHeaders("x-custom"))
+        assertEquals(listOf("Content-Type", "X-CUSTOM", "Vary"), names.toList())
+        // The fields after the removed one moved, and can still be replaced.
+        hsr.setHeader("vary", "Origin")
+        assertEquals(listOf("Origin"), hsr.getHeaders("Vary"))
+        assertEquals(listOf("Content-Type", "X-CUSTOM", "vary"), names.toList())
+
+        hsr.setDateHeader("Expires", 0)
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", hsr.getHeader("expires"))
+        hsr.setIntHeader("Content-Length", 42)
+        hsr.setIntHeader("content-length", 43)
+        assertEquals(listOf("43"), hsr.getHeaders("Content-Length"))
+
+        hsr.reset()
+        assertFalse(hsr.containsHeader("Content-Type"))
+        assertTrue(names.isEmpty())
+    }
+
+    @Test
+    fun testOutputStream() {
+        val hsr = httpServletResponse()
+        hsr.characterEncoding = "UTF-8"
+        val os = hsr.outputStream
+        os.write("日本語 ".toByteArray(UTF_8))
+        hsr.writer.write("→ ok")
+        assertEquals("日本語 → ok", os.contentAsString())
+        assertEquals("FakeServletOutputStream(\"日本語 → ok\")", os.toString())
+        assertEquals(16, os.size())
+
+        val view = os.asByteBuffer()
+        assertTrue(view.isReadOnly)
+        assertEquals(16, view.remaining())
+        assertArrayEquals("日本語 → ok".toByteArray(UTF_8), os.toByteArray())
+
+        // The body is decoded with the current encoding.
+        hsr.characterEncoding = "ISO-8859-1"
+        assertEquals(String("日本語 → ok".toByteArray(UTF_8), ISO_8859_1), os.contentAsString())
+
+        os.write(byteArrayOf(1, 2, 3), 1, 2)
+        assertEquals(18, os.size())
+        assertEquals(3, os.asByteBuffer().get(17))
+        assertThrows(IndexOutOfBoundsException::class.java) { os.write(byteArrayOf(1, 2, 3), 2, 2) }
+    }
+
+    @Test
+    fun testBuffer() {
+        val before = System.nanoTime()
+        val hsr = httpServletResponse()
+        hsr.bufferSize = 10
+        val os = hsr.outputStream
+        os.write(ByteArray(4))
+        assertEquals(4, os.bufferedSize())
+        assertFalse(hsr.isCommitted)
+        assertEquals(listOf<Int>(), os.flushes.map { it.bytes })
+
+        // Overflow sends what was buffered first, and anything too big goes straight out.
+        os.write(ByteArray(8))
+        assertTrue(hsr.isCommitted)
+        os.write(ByteArray(20))
+        assertEquals(listOf(4, 8, 20), os.flushes.map { it.bytes })
+        assertEquals(0, os.bufferedSize())
+        assertTrue(os.flushes[0].nanoTime >= before)
+        assertEquals(32, os.size())
+
+        assertThrows(IllegalStateException::class.java) { hsr.bufferSize = 100 }
+        assertThrows(IllegalStateException::class.java) { hsr.resetBuffer() }
+        assertThrows(IllegalStateException::class.java) { hsr.reset() }
+    }
+
+    @Test
+    fun testResetAndFlush() {
+        val hsr = httpServletResponse()
+        hsr.characterEncoding = "UTF-8"
+        hsr.setHeader("Hello", "World")
+        hsr.status = 500
+        val writer = hsr.writer
+        assertSame(writer, hsr.writer)
+        writer.print("oops")
+        assertEquals("oops", hsr.outputStream.contentAsString())
+        hsr.resetBuffer()
+        assertEquals("", hsr.outputStream.contentAsString())
+        writer.print("oops")
+        hsr.setContentType("text/plain")
+        hsr.setLocale(Locale.CANADA)
+        hsr.reset()
+        assertEquals(0, hsr.status)
+        assertFalse(hsr.containsHeader("Hello"))
+        assertEquals(0, hsr.outputStream.size())
+        assertNull(hsr.contentType)
+        assertNull(hsr.characterEncoding)
+        assertNull(hsr.locale)
+        hsr.characterEncoding = "UTF-8"
+
+        // A surrogate pair split across writes
+        writer.write(charArrayOf('a', '\uD83D'))
+        writer.write(charArrayOf('\uDE00'))
+        assertEquals("a\uD83D\uDE00", hsr.outputStream.contentAsString())
+
+        assertFalse(hsr.isCommitted)
+        writer.flush()
+        assertTrue(hsr.isCommitted)
+        hsr.flushBuffer()
+        assertEquals(listOf(5), hsr.outputStream.flushes.map { it.bytes })
+
+        // Committing with an empty buffer still sends the headers.
+        val empty = httpServletResponse()
+        empty.flushBuffer()
+        assertTrue(empty.isCommitted)
+        assertEquals(listOf(0), empty.outputStream.flushes.map { it.bytes })
+    }
+
+    @Test
+    fun testSendErrorDiscardsBuffer() {
+        val hsr = httpServletResponse()
+        hsr.writer.print("half a page")
+        hsr.sendError(500)
+        assertEquals(500, hsr.status)
+        assertTrue(hsr.isCommitted)
+        assertEquals(0, hsr.outputStream.size())
+        assertEquals(listOf(0), hsr.outputStream.flushes.map { it.bytes })
+    }
+
+    // A 100 MB download written in bulk.
+    @Test
+    fun testLargeBody() {
+        val os = httpServletResponse().outputStream
+        val chunk = ByteArray(1 shl 20) { it.toByte() }
+        for (i in 0 until 100) {
+            os.write(chunk)
+        }
+        assertEquals(100 shl 20, os.size())
+        val body = os.asByteBuffer()
+        assertEquals(0xff.toByte(), body.get((50 shl 20) + 255))
+    }
+
     @Test
     fun coverageJunky() {
         val hsr = httpServletResponse()
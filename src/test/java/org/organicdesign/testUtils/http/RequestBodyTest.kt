@@ -0,0 +1,157 @@
+package org.organicdesign.testUtils.http
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.io.InputStream
+import java.io.InputStreamReader
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.file.Files
+
+class RequestBodyTest {
+    private val text = "Thís ís the coñteñt"
+    private val bytes = text.toByteArray(Charsets.UTF_8)
+
+    private fun readAll(body: RequestBody): ByteArray = body.openStream().use { it.readAllBytes() }
+
+    @Test
+    fun testSources() {
+        val fromBytes = RequestBody.of(bytes)
+        assertEquals(bytes.size.toLong(), fromBytes.size())
+        assertArrayEquals(bytes, readAll(fromBytes))
+        // Again, from the start
+        assertArrayEquals(bytes, readAll(fromBytes))
+
+        val buf = ByteBuffer.allocateDirect(bytes.size + 2)
+        buf.put(9).put(bytes).put(9).flip().position(1).limit(bytes.size + 1)
+        val fromBuffer = RequestBody.of(buf)
+        assertEquals(bytes.size.toLong(), fromBuffer.size())
+        assertArrayEquals(bytes, readAll(fromBuffer))
+        assertArrayEquals(bytes, readAll(fromBuffer))
+        assertEquals(1, buf.position())
+
+        val path = Files.createTempFile("requestBody", ".txt")
+        try {
+            Files.write(path, bytes)
+            val fromPath = RequestBody.of(path)
+            assertEquals(bytes.size.toLong(), fromPath.size())
+            assertArrayEquals(bytes, readAll(fromPath))
+            assertArrayEquals(bytes, readAll(fromPath))
+        } finally {
+            Files.delete(path)
+        }
+    }
+
+    @Test
+    fun testIndependentCursors() {
+        val body = RequestBody.of(ByteBuffer.wrap(bytes))
+        val s1 = body.openStream()
+        val s2 = body.openStream()
+        assertEquals(bytes[0].toInt() and 0xff, s1.read())
+        assertEquals(bytes[1].toInt() and 0xff, s1.read())
+        assertEquals(bytes[0].toInt() and 0xff, s2.read())
+        assertEquals(3, s2.skip(3))
+        assertEquals(bytes.size - 4, s2.available())
+        assertEquals(bytes.size - 4, s2.read(ByteArray(100), 0, 100))
+        assertEquals(-1, s2.read())
+        assertEquals(-1, s2.read(ByteArray(100), 0, 100))
+    }
+
+    @Test
+    fun testSharedAcrossRequests() {
+        val template = ReqB().body(RequestBody.of(bytes)).freeze()
+        val results = (0 until 1000).toList().parallelStream().map {
+            val req = template.toReq()
+            assertEquals(bytes.size, req.contentLength)
+            InputStreamReader(req.inputStream as InputStream, Charsets.UTF_8).readText()
+        }.toList()
+        assertTrue(results.all { it == text })
+
+        // The default body is no longer one stream that the first reader drains.
+        val first = InputStreamReader(ReqB.funDefaults().toReq().inputStream as InputStream, Charsets.UTF_8).readText()
+        assertEquals(first, InputStreamReader(ReqB.funDefaults().toReq().inputStream as InputStream,
+                                              Charsets.UTF_8).readText())
+        assertTrue(first.isNotEmpty())
+        assertEquals(first.toByteArray(Charsets.UTF_8).size, ReqB.funDefaults().toReq().contentLength)
+    }
+
+    @Test
+    fun testMappedWindows() {
+        val data = ByteArray(10_000) { (it * 7).toByte() }
+        val path = Files.createTempFile("requestBody", ".bin")
+        try {
+            Files.write(path, data)
+            val body = RequestBody.of(path, 1000)
+            assertArrayEquals(data, readAll(body))
+
+            // Odd-sized reads and skips that cross windows
+            body.openStream().use { s ->
+                val chunk = ByteArray(777)
+                assertEquals(777, s.read(chunk))
+                assertArrayEquals(data.copyOfRange(0, 777), chunk)
+                assertEquals(223, s.read(chunk))
+                assertEquals(2500, s.skip(2500))
+                assertEquals(data[3500].toInt() and 0xff, s.read())
+                assertEquals(20, s.skip(20))
+                assertEquals(data[3521].toInt() and 0xff, s.read())
+                assertEquals(10_000L - 3522, s.skip(Long.MAX_VALUE))
+                assertEquals(-1, s.read())
+                assertEquals(-1, s.read(chunk))
+            }
+        } finally {
+            Files.delete(path)
+        }
+    }
+
+    // A 3 GB upload that's mostly a hole in a sparse file.  Skipping jumps straight to the last window
+    // without reading the hole, and closing the request's stream closes the file.
+    @Test
+    fun testHugeFile() {
+        val size = 3L shl 30
+        val path = Files.createTempFile("requestBody", ".bin")
+        try {
+            RandomAccessFile(path.toFile(), "rw").use { raf ->
+                raf.setLength(size)
+                raf.seek(size - 1)
+                raf.write(42)
+            }
+            val req = ReqB().method("POST").body(path).toReq()
+            assertEquals(-1, req.contentLength)
+            assertEquals(size, req.contentLengthLong)
+
+            var file: MappedFileInputStream? = null
+            val template = ReqB().method("POST")
+                    .body({ MappedFileInputStream(path, RequestBody.MAP_WINDOW).also { file = it } }, size)
+                    .freeze()
+            val s = template.toReq().inputStream!!
+            assertEquals(size - 1, s.skip(size - 1))
+            assertEquals(0, file!!.windowsLoaded)
+            assertEquals(42, s.read())
+            assertEquals(0, s.available())
+            assertEquals(-1, s.read())
+            assertEquals(1, file!!.windowsLoaded)
+            assertTrue(file!!.isOpen())
+            s.close()
+            assertFalse(file!!.isOpen())
+        } finally {
+            Files.delete(path)
+        }
+    }
+
+    @Test
+    fun testReqBSources() {
+        val direct = ByteBuffer.allocateDirect(bytes.size).put(bytes).flip()
+        val fromBuffer = ReqB().body(direct).toReq()
+        assertEquals(bytes.size, fromBuffer.contentLength)
+        assertArrayEquals(bytes, fromBuffer.inputStream!!.readAllBytes())
+
+        var opened = 0
+        val template = ReqB().body({ opened++; bytes.inputStream() }, bytes.size.toLong()).freeze()
+        assertEquals(bytes.size, template.toReq().contentLength)
+        assertArrayEquals(bytes, template.toReq().inputStream!!.readAllBytes())
+        assertArrayEquals(bytes, template.toReq().inputStream!!.readAllBytes())
+        assertEquals(2, opened)
+
+        assertEquals(-1, ReqB().body({ bytes.inputStream() }).toReq().contentLength)
+    }
+}
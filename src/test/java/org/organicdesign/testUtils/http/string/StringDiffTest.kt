@@ -1,9 +1,27 @@
 package org.organicdesign.testUtils.http.string
 
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.organicdesign.testUtils.string.DiffHunk
 import org.organicdesign.testUtils.string.DiffResult
+import org.organicdesign.testUtils.string.HashedLines
+import org.organicdesign.testUtils.string.StringDiff.Algorithm
+import org.organicdesign.testUtils.string.StringDiff.Algorithm.HISTOGRAM
+import org.organicdesign.testUtils.string.StringDiff.Algorithm.MYERS
+import org.organicdesign.testUtils.string.StringDiff.Algorithm.PATIENCE
+import org.organicdesign.testUtils.string.StringDiff.Granularity
+import org.organicdesign.testUtils.string.StringDiff.Granularity.CHAR
+import org.organicdesign.testUtils.string.StringDiff.Granularity.LINE
+import org.organicdesign.testUtils.string.StringDiff.diff
 import org.organicdesign.testUtils.string.StringDiff.differentMiddle
+import org.organicdesign.testUtils.string.StringDiff.differentMiddleParallel
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.ForkJoinPool
+import kotlin.random.Random
 
 class StringDiffTest {
     @Test
@@ -51,4 +69,299 @@ class StringDiffTest {
                      differentMiddle("abcdefghi", "abcghi"))
 
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testCharDiff() {
+        assertEquals(listOf<DiffHunk>(), diff("", "", CHAR))
+        assertEquals(listOf<DiffHunk>(), diff("Hello", "Hello", CHAR))
+        assertEquals(listOf(DiffHunk(1, "i", 1, "")),
+                     diff("Hi", "H", CHAR))
+        assertEquals(listOf(DiffHunk(0, "", 0, "abc")),
+                     diff("", "abc", CHAR))
+        // Adjacent changes come back as one hunk.
+        assertEquals(listOf(DiffHunk(1, "od", 1, "an")),
+                     diff("coddle", "candle", CHAR))
+        assertEquals(listOf(DiffHunk(0, "abc", 0, "def")),
+                     diff("abc", "def", CHAR))
+        assertEquals(listOf(DiffHunk(1, "b", 1, ""),
+                            DiffHunk(4, "", 3, "x"),
+                            DiffHunk(6, "g", 6, "")),
+                     diff("abcdefgh", "acdxefh", CHAR))
+    }
+
+    @Test
+    fun testLineDiff() {
+        assertEquals(listOf<DiffHunk>(), diff("a\nb\n", "a\nb\n"))
+        assertEquals(listOf(DiffHunk(2, "b\n", 2, "B\n")),
+                     diff("a\nb\nc\n", "a\nB\nc\n"))
+        assertEquals(listOf(DiffHunk(2, "b", 2, "bb")),
+                     diff("a\nb", "a\nbb"))
+        assertEquals(listOf(DiffHunk(0, "", 0, "new\n"),
+                            DiffHunk(4, "c\n", 8, "")),
+                     diff("a\nb\nc\nd\n", "new\na\nb\nd\n"))
+    }
+
+    @Test
+    fun testLargeSmallEdits() {
+        val sB = StringBuilder()
+        for (i in 0 until 100_000) {
+            sB.append("<div id=\"").append(i).append("\">Line number ").append(i).append("</div>\n")
+        }
+        val s1 = sB.toString()
+        val s2 = s1.replace("Line number 10\u003C", "Line NUMBER 10<")
+                .replace("id=\"99990\"", "id=\"x\"")
+        val hunks = diff(s1, s2)
+        assertEquals(2, hunks.size)
+        assertEquals("<div id=\"10\">Line number 10</div>\n", hunks[0].first)
+        assertEquals("<div id=\"10\">Line NUMBER 10</div>\n", hunks[0].second)
+        assertEquals("<div id=\"x\">Line number 99990</div>\n", hunks[1].second)
+
+        val charHunks = diff(s1, s2, CHAR)
+        assertEquals(listOf(DiffHunk(hunks[0].start1 + 18, "number", hunks[0].start2 + 18, "NUMBER"),
+                            DiffHunk(hunks[1].start1 + 9, "99990", hunks[1].start2 + 9, "x")),
+                     charHunks)
+    }
+
+    // Applying the hunks to the first string must produce the second.
+    @Test
+    fun testRandomEditsReconstruct() {
+        val rand = Random(20220318)
+        for (round in 0 until 200) {
+            val s1 = randomString(rand, rand.nextInt(60))
+            val sB = StringBuilder(s1)
+            for (e in 0 until rand.nextInt(5)) {
+                val pos = rand.nextInt(sB.length + 1)
+                if (sB.isNotEmpty() && rand.nextBoolean()) {
+                    sB.deleteCharAt(minOf(pos, sB.length - 1))
+                } else {
+                    sB.insert(pos, randomString(rand, 1 + rand.nextInt(3)))
+                }
+            }
+            val s2 = sB.toString()
+            val baseline = HashedLines(s1)
+            for (algorithm in Algorithm.values()) {
+                for (granularity in Granularity.values()) {
+                    assertReconstructs(s1, s2, diff(s1, s2, granularity, algorithm))
+                }
+                assertReconstructs(s1, s2, diff(baseline, s2, algorithm))
+            }
+        }
+    }
+
+    /** Applying the hunks to s1 must produce s2. */
+    private fun assertReconstructs(s1: String, s2: String, hunks: List<DiffHunk>) {
+        val rebuilt = StringBuilder()
+        var idx = 0
+        for (h in hunks) {
+            assertTrue(h.start1 >= idx)
+            assertEquals(s1.substring(h.start1, h.end1()), h.first)
+            assertEquals(s2.substring(h.start2, h.end2()), h.second)
+            rebuilt.append(s1, idx, h.start1).append(h.second)
+            idx = h.end1()
+        }
+        rebuilt.append(s1, idx, s1.length)
+        assertEquals(s2, rebuilt.toString(), "s1=$s1 s2=$s2 hunks=$hunks")
+    }
+
+    private fun randomString(rand: Random, len: Int): String =
+            String(CharArray(len) { "ab\nc"[rand.nextInt(4)] })
+
+    private fun fileDiff(dir: Path, s1: String, s2: String, window: Long): DiffResult {
+        val p1 = Files.writeString(dir.resolve("one.txt"), s1)
+        val p2 = Files.writeString(dir.resolve("two.txt"), s2)
+        val ret = org.organicdesign.testUtils.string.StringDiff.differentMiddle(p1, p2, window)
+        assertEquals(ret, differentMiddle(p1, p2))
+        return ret
+    }
+
+    @Test
+    fun testFileDiff(@TempDir dir: Path) {
+        val pairs = listOf("" to "", "Hello" to "Hello", "Hi" to "H", "Hell" to "Hello",
+                           "Media" to "Hello", "Mello" to "Hello", "Mellow" to "Hello",
+                           "coddle" to "candle", "kind" to "kick", "paid" to "pain",
+                           "dinner" to "diner", "diner" to "dinner", "abc" to "def",
+                           "abcdefghi" to "abcghi")
+        for ((s1, s2) in pairs) {
+            for (window in listOf(1L, 3L, 1L shl 20)) {
+                assertEquals(differentMiddle(s1, s2), fileDiff(dir, s1, s2, window), "$s1 vs. $s2")
+            }
+        }
+
+        // Multi-byte characters are never split.
+        assertEquals(DiffResult("é", "è"), fileDiff(dir, "café!", "cafè!", 2))
+        assertEquals(DiffResult("\uD83D\uDE00", "\uD83D\uDE01"),
+                     fileDiff(dir, "a\uD83D\uDE00b", "a\uD83D\uDE01b", 2))
+        assertEquals(DiffResult("", "本日"), fileDiff(dir, "日語", "日本日語", 2))
+    }
+
+    @Test
+    fun testLargeFileDiff(@TempDir dir: Path) {
+        val big = "0123456789abcdef".repeat(1 shl 16)
+        assertEquals(DiffResult.IDENTICAL, fileDiff(dir, big, big, 1L shl 12))
+        val changed = big.substring(0, 1000) + "X" + big.substring(1001, 900_000) + "Y" + big.substring(900_001)
+        assertEquals(DiffResult(big.substring(1000, 900_001), changed.substring(1000, 900_001)),
+                     fileDiff(dir, big, changed, 1L shl 12))
+    }
+
+    @Test
+    fun testParallelMatchesSequential() {
+        val rand = Random(20220318)
+        val pool = ForkJoinPool(4)
+        try {
+            for (round in 0 until 500) {
+                val s1 = randomString(rand, rand.nextInt(40))
+                val s2 = if (rand.nextInt(4) == 0) {
+                    s1
+                } else {
+                    val sB = StringBuilder(s1)
+                    for (e in 0 until 1 + rand.nextInt(3)) {
+                        val pos = rand.nextInt(sB.length + 1)
+                        if (sB.isNotEmpty() && rand.nextBoolean()) {
+                            sB.setCharAt(minOf(pos, sB.length - 1), 'x')
+                        } else {
+                            sB.insert(pos, randomString(rand, 1 + rand.nextInt(3)))
+                        }
+                    }
+                    sB.toString()
+                }
+                for (chunk in listOf(1, 3, 7, 1000)) {
+                    assertEquals(differentMiddle(s1, s2),
+                                 org.organicdesign.testUtils.string.StringDiff.differentMiddleParallel(s1, s2, pool, chunk),
+                                 "s1=$s1 s2=$s2 chunk=$chunk")
+                }
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun testParallelLarge() {
+        val big = "0123456789abcdef".repeat(1 shl 18)
+        val copy = String(big.toCharArray())
+        assertEquals(DiffResult.IDENTICAL, differentMiddleParallel(big, copy))
+        val changed = big.substring(0, 3_000_000) + "XY" + big.substring(3_000_001)
+        assertEquals(DiffResult("0", "XY"), differentMiddleParallel(big, changed))
+        assertEquals(DiffResult("", "!"), differentMiddleParallel(big, "$big!"))
+
+        // Several differences, so chunks farther in are cancelled or stop early.  The outermost ones win.
+        val sB = StringBuilder(big)
+        for (i in listOf(5, 9_000, 1_500_000, 3_000_000, big.length - 20_000, big.length - 3)) {
+            sB.setCharAt(i, 'X')
+        }
+        val several = sB.toString()
+        assertEquals(differentMiddle(big, several), differentMiddleParallel(big, several))
+        val pool = ForkJoinPool(4)
+        try {
+            assertEquals(differentMiddle(big, several),
+                         org.organicdesign.testUtils.string.StringDiff.differentMiddleParallel(big, several, pool, 10_000))
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun testSurrogatePairs() {
+        // U+1F600 and U+1F601 share a high surrogate, U+1F600 and U+1F400 share a low one.
+        assertEquals(DiffResult("\uD83D\uDE00", "\uD83D\uDE01"),
+                     differentMiddle("a\uD83D\uDE00b", "a\uD83D\uDE01b"))
+        assertEquals(DiffResult("\uD83D\uDE00", "\uD83C\uDE00"),
+                     differentMiddle("a\uD83D\uDE00b", "a\uD83C\uDE00b"))
+        assertEquals(DiffResult("\uD83D\uDE00", "\uD83D\uDE01"),
+                     differentMiddleParallel("\uD83D\uDE00", "\uD83D\uDE01"))
+        assertEquals(DiffResult("\uD83D\uDE00", ""),
+                     differentMiddle("\uD83D\uDE00\uD83D\uDE00", "\uD83D\uDE00"))
+    }
+
+    private val codePoints = listOf("a", "b", "\n", "é", "è", "日", "本", "\uD83D\uDE00", "\uD83D\uDE01", "\uD83C\uDE00")
+
+    private fun randomCodePoints(rand: Random, len: Int): String =
+            (0 until len).joinToString("") { codePoints[rand.nextInt(codePoints.size)] }
+
+    // The UTF-8 versions must agree with the code-point-correct String version.
+    @Test
+    fun testUtf8Bytes() {
+        val rand = Random(20220318)
+        for (round in 0 until 1000) {
+            val s1 = randomCodePoints(rand, rand.nextInt(12))
+            val s2 = when (rand.nextInt(3)) {
+                0 -> s1
+                1 -> randomCodePoints(rand, rand.nextInt(12))
+                else -> s1.substring(0, s1.offsetByCodePoints(0, s1.codePointCount(0, s1.length) / 2)) +
+                        randomCodePoints(rand, 1)
+            }
+            val expected = differentMiddle(s1, s2)
+            assertEquals(expected, differentMiddleParallel(s1, s2), "s1=$s1 s2=$s2")
+            val bytes1 = s1.toByteArray()
+            val bytes2 = s2.toByteArray()
+            assertEquals(expected, differentMiddle(bytes1, bytes2), "s1=$s1 s2=$s2")
+
+            // Only the remaining bytes count, and the buffers aren't changed.
+            val buf1 = ByteBuffer.allocateDirect(bytes1.size + 5)
+            buf1.put("junk!".toByteArray()).put(bytes1).flip().position(5)
+            val buf2 = ByteBuffer.wrap("[".toByteArray() + bytes2 + "]".toByteArray(), 1, bytes2.size)
+            assertEquals(expected, differentMiddle(buf1, buf2), "s1=$s1 s2=$s2")
+            assertEquals(5, buf1.position())
+            assertEquals(1, buf2.position())
+            assertEquals(bytes2.size + 1, buf2.limit())
+        }
+    }
+
+    @Test
+    fun testPatienceAndHistogram() {
+        val s1 = "void func1() {\n" +
+                 "    x += 1\n" +
+                 "}\n" +
+                 "\n" +
+                 "void func2() {\n" +
+                 "    x += 2\n" +
+                 "}\n"
+        val s2 = "void func1() {\n" +
+                 "    x += 1\n" +
+                 "}\n" +
+                 "\n" +
+                 "void functhreehalves() {\n" +
+                 "    x += 1.5\n" +
+                 "}\n" +
+                 "\n" +
+                 "void func2() {\n" +
+                 "    x += 2\n" +
+                 "}\n"
+        val added = listOf(DiffHunk(s1.indexOf("void func2"), "",
+                                    s2.indexOf("void functhreehalves"),
+                                    "void functhreehalves() {\n    x += 1.5\n}\n\n"))
+        assertEquals(added, diff(s1, s2, LINE, PATIENCE))
+        assertEquals(added, diff(s1, s2, LINE, HISTOGRAM))
+        assertEquals(added, diff(HashedLines(s1), s2, HISTOGRAM))
+
+        // Lots of repeated lines, and a changed line that's unique.
+        val log1 = (0 until 1000).joinToString("") { if (it % 100 == 42) "ERROR $it\n" else "INFO ok\n" }
+        val log2 = log1.replace("ERROR 542\n", "ERROR 542!\n")
+        val expected = listOf(DiffHunk(log1.indexOf("ERROR 542"), "ERROR 542\n",
+                                       log2.indexOf("ERROR 542"), "ERROR 542!\n"))
+        for (algorithm in Algorithm.values()) {
+            assertEquals(expected, diff(log1, log2, LINE, algorithm))
+        }
+    }
+
+    @Test
+    fun testHashedLinesBaseline() {
+        val baseline = "alpha\nbeta\ngamma\ndelta\n"
+        val hashed = HashedLines(baseline)
+        assertEquals(4, hashed.lineCount())
+        assertEquals(listOf<DiffHunk>(), diff(hashed, baseline))
+        for (candidate in listOf("alpha\nBETA\ngamma\ndelta\n",
+                                 "alpha\ngamma\ndelta\nepsilon",
+                                 "",
+                                 "delta\ngamma\nbeta\nalpha\n")) {
+            // Both overloads default to the same algorithm.
+            assertEquals(diff(baseline, candidate), diff(hashed, candidate))
+            for (algorithm in Algorithm.values()) {
+                assertEquals(diff(baseline, candidate, LINE, MYERS).size > 0,
+                             diff(hashed, candidate, algorithm).isNotEmpty())
+                assertReconstructs(baseline, candidate, diff(hashed, candidate, algorithm))
+            }
+            assertEquals(diff(baseline, candidate, LINE, MYERS), diff(hashed, candidate, MYERS))
+        }
+    }
+}
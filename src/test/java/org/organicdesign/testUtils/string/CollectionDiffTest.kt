@@ -0,0 +1,89 @@
+package org.organicdesign.testUtils.string
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.organicdesign.testUtils.string.CollectionDiff.diff
+import org.organicdesign.testUtils.string.StructuralDiff.Change
+import org.organicdesign.testUtils.string.StructuralDiff.Kind.*
+import java.util.LinkedList
+
+class CollectionDiffTest {
+    @Test
+    fun testLists() {
+        assertTrue(diff(listOf<Any>(), listOf<Any>()).isIdentical())
+        assertTrue(diff(listOf("a", "b"), listOf("a", "b")).isIdentical())
+        assertEquals("IDENTICAL", diff(listOf("a"), listOf("a")).toString())
+
+        assertEquals(listOf(Change(CHANGED, 1, "b", 1, "X")),
+                     diff(listOf("a", "b", "c"), listOf("a", "X", "c")).changes)
+
+        assertEquals(listOf(Change(MOVED, 1, "b", 2, "b")),
+                     diff(listOf("a", "b", "c", "d"), listOf("a", "c", "b", "d")).changes)
+
+        assertEquals(listOf(Change(DELETED, 1, "b", null, null),
+                            Change(INSERTED, null, null, 2, "d")),
+                     diff(listOf("a", "b", "c"), listOf("a", "c", "d")).changes)
+
+        assertEquals(listOf(Change(INSERTED, null, null, 0, "z"),
+                            Change(DELETED, 2, "c", null, null)),
+                     diff(listOf("a", "b", "c"), listOf("z", "a", "b")).changes)
+
+        // Duplicates and nulls
+        assertEquals(listOf(Change(DELETED, 2, "a", null, null)),
+                     diff(listOf("a", "a", "a", null), listOf("a", "a", null)).changes)
+        assertEquals(listOf(Change(CHANGED, 1, null, 1, "b")),
+                     diff(listOf("a", null), listOf("a", "b")).changes)
+    }
+
+    @Test
+    fun testMaps() {
+        val m1 = linkedMapOf("a" to 1, "b" to 2, "c" to 3, "n" to null)
+        val m2 = linkedMapOf("d" to 4, "c" to 3, "b" to 20, "n" to null)
+        val sd = diff(m1, m2)
+        assertEquals(listOf(Change(DELETED, "a", 1, null, null),
+                            Change(CHANGED, "b", 2, "b", 20),
+                            Change(INSERTED, null, null, "d", 4)),
+                     sd.changes)
+        assertEquals(1, sd.count(CHANGED))
+        assertEquals(0, sd.count(MOVED))
+        assertTrue(diff(m1, LinkedHashMap(m1)).isIdentical())
+    }
+
+    @Test
+    fun testToString() {
+        val sd = diff((0 until 20).toList(), (0 until 20).map { if (it % 2 == 0) it else -it })
+        assertEquals(10, sd.count(CHANGED))
+        val s = sd.withMaxShown(3).toString()
+        assertEquals("StructuralDiff(inserted=0, deleted=0, moved=0, changed=10,\n" +
+                     "    CHANGED [1] 1 -> [1] -1,\n" +
+                     "    CHANGED [3] 3 -> [3] -3,\n" +
+                     "    CHANGED [5] 5 -> [5] -5,\n" +
+                     "    ...and 7 more)",
+                     s)
+
+        val long = "x".repeat(1000)
+        assertEquals("StructuralDiff(inserted=1, deleted=0, moved=0, changed=0,\n" +
+                     "    INSERTED [1] \"" + "x".repeat(79) + "...)",
+                     diff(listOf("a"), listOf("a", long)).toString())
+    }
+
+    // Result sets of a million rows with a few changes.
+    @Test
+    fun testLarge() {
+        val rows1 = (0 until 1_000_000).map { "row $it" }
+        val rows2 = ArrayList(rows1)
+        rows2[10] = "changed"
+        rows2.removeAt(500_000)
+        rows2.add(700_000, rows2.removeAt(600_000))
+        rows2.add(900_000, "new")
+        val sd = diff(rows1, rows2)
+        assertEquals(listOf(Change(CHANGED, 10, "row 10", 10, "changed"),
+                            Change(DELETED, 500_000, "row 500000", null, null),
+                            Change(MOVED, 600_001, "row 600001", 700_000, "row 600001"),
+                            Change(INSERTED, null, null, 900_000, "new")),
+                     sd.changes)
+
+        // A LinkedList is slow to index, but it's only walked once.
+        assertEquals(sd.changes, diff(LinkedList(rows1), LinkedList(rows2)).changes)
+    }
+}
@@ -0,0 +1,68 @@
+package org.organicdesign.testUtils.string
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.organicdesign.testUtils.string.StringDiff.differentMiddleRange
+
+class DiffRangeTest {
+    @Test
+    fun testBasics() {
+        val range = differentMiddleRange("coddle", "candle")
+        assertEquals(DiffRange("coddle", 1, 3, "candle", 1, 3), range)
+        assertEquals(DiffResult("od", "an"), range.toDiffResult())
+        assertEquals("od", range.first())
+        assertEquals("an", range.second())
+        assertFalse(range.isIdentical())
+        assertEquals("DiffRange(1, \"c[od]dle\", 1, \"c[an]dle\")", range.toString())
+
+        assertTrue(differentMiddleRange("Hello", "Hello").isIdentical())
+        assertEquals(DiffResult.IDENTICAL, differentMiddleRange("", "").toDiffResult())
+        assertEquals("IDENTICAL", differentMiddleRange("Hello", "Hello").toString())
+        assertEquals(DiffResult("", "o"), differentMiddleRange("Hell", "Hello").toDiffResult())
+        assertEquals(DiffResult("n", ""), differentMiddleRange("dinner", "diner").toDiffResult())
+
+        // Works on any CharSequence
+        assertEquals(DiffResult("def", ""),
+                     differentMiddleRange(StringBuilder("abcdefghi"), "abcghi").toDiffResult())
+    }
+
+    @Test
+    fun testEquality() {
+        // Same offsets and differing text are equal even if the surrounding text isn't.
+        assertEquals(DiffRange("xay", 1, 2, "xby", 1, 2),
+                     DiffRange("zaz", 1, 2, "zbz", 1, 2))
+        assertEquals(DiffRange("xay", 1, 2, "xby", 1, 2).hashCode(),
+                     DiffRange("zaz", 1, 2, "zbz", 1, 2).hashCode())
+        assertNotEquals(DiffRange("xay", 1, 2, "xby", 1, 2),
+                        DiffRange("xcy", 1, 2, "xby", 1, 2))
+        assertNotEquals(DiffRange("xay", 1, 2, "xby", 1, 2),
+                        DiffRange("xay", 1, 2, "xby", 1, 3))
+    }
+
+    @Test
+    fun testBoundedToString() {
+        val big1 = "a".repeat(1_000_000) + "Hello" + "z".repeat(1_000_000)
+        val big2 = "a".repeat(1_000_000) + "World" + "z".repeat(1_000_000)
+        val range = differentMiddleRange(big1, big2, 3, 10)
+        assertEquals(1_000_000, range.start1)
+        assertEquals(1_000_005, range.end1)
+        assertEquals("DiffRange(1000000, \"...aaa[Hello]zzz...\", 1000000, \"...aaa[World]zzz...\")",
+                     range.toString())
+
+        val long1 = "abc" + "x".repeat(1_000_000) + "def"
+        val longRange = differentMiddleRange(long1, "abcdef", 2, 4)
+        assertEquals("DiffRange(3, \"...bc[xxxx...(999996 more)]de...\", 3, \"...bc[]de...\")",
+                     longRange.toString())
+        assertEquals("DiffRange(3, \"abc[xxxxxx...(999994 more)]def\", 3, \"abc[]def\")",
+                     longRange.withContext(10, 6).toString())
+    }
+
+    @Test
+    fun testBadRanges() {
+        assertThrows<IllegalArgumentException> { DiffRange("abc", 2, 1, "abc", 0, 0) }
+        assertThrows<IllegalArgumentException> { DiffRange("abc", 0, 4, "abc", 0, 0) }
+        assertThrows<IllegalArgumentException> { DiffRange("abc", 0, 0, "abc", -1, 0) }
+        assertThrows<IllegalArgumentException> { DiffRange("abc", 0, 0, "abc", 0, 0, -1) }
+    }
+}
@@ -0,0 +1,114 @@
+package org.organicdesign.testUtils.string
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.organicdesign.testUtils.string.StreamDiff.Difference
+import org.organicdesign.testUtils.string.StreamDiff.diff
+import java.io.ByteArrayInputStream
+import java.io.Reader
+import java.io.StringReader
+
+class StreamDiffTest {
+
+    /** Generates "line 0\nline 1\n..." on the fly with a couple of changed lines. */
+    class LinesReader(
+            private val lines: Int,
+            private val changes: Map<Int, String>
+    ) : Reader() {
+        private var line = 0
+        private var current = ""
+        private var idx = 0
+
+        override fun read(cbuf: CharArray, off: Int, len: Int): Int {
+            var count = 0
+            while (count < len) {
+                while (idx == current.length && line < lines) {
+                    current = changes[line] ?: "line $line\n"
+                    line++
+                    idx = 0
+                }
+                if (idx == current.length) {
+                    break
+                }
+                cbuf[off + count] = current[idx]
+                idx++
+                count++
+            }
+            return if (count == 0 && len > 0) -1 else count
+        }
+
+        override fun close() {}
+    }
+
+    private fun diffStrings(s1: String, s2: String, maxDifferences: Int = 10, context: Int = 3,
+                            window: Int = 64): List<Difference> =
+            diff(StringReader(s1), StringReader(s2), maxDifferences, context, window)
+
+    @Test
+    fun testSmall() {
+        assertEquals(listOf<Difference>(), diffStrings("", ""))
+        assertEquals(listOf<Difference>(), diffStrings("Hello", "Hello"))
+        assertEquals(listOf(Difference(1, "i", 1, "", "H", "", false)),
+                     diffStrings("Hi", "H"))
+        assertEquals(listOf(Difference(0, "", 0, "abc", "", "", false)),
+                     diffStrings("", "abc"))
+        assertEquals(listOf(Difference(1, "b", 1, "", "a", "cd", false),
+                            Difference(4, "", 3, "x", "bcd", "ef", false),
+                            Difference(6, "g", 6, "", "def", "h", false)),
+                     diffStrings("abcdefgh", "acdxefh"))
+    }
+
+    @Test
+    fun testMaxDifferencesAndCallback() {
+        val seen: MutableList<Difference> = mutableListOf()
+        val diffs = diff(StringReader("a1b2c3d4"), StringReader("a9b9c9d9"), 2, 1, 16) { seen.add(it) }
+        assertEquals(listOf(Difference(1, "1", 1, "9", "a", "b", false),
+                            Difference(3, "2", 3, "9", "b", "c", false)),
+                     diffs)
+        assertEquals(diffs, seen)
+    }
+
+    @Test
+    fun testTruncated() {
+        val diffs = diffStrings("same" + "a".repeat(200), "same" + "b".repeat(200), window = 16)
+        assertEquals(1, diffs.size)
+        assertTrue(diffs[0].truncated)
+        assertEquals(4, diffs[0].start1)
+        assertEquals("a".repeat(16), diffs[0].first)
+        assertEquals("b".repeat(16), diffs[0].second)
+        assertEquals("ame", diffs[0].before)
+    }
+
+    @Test
+    fun testInputStream() {
+        val diffs = diff(ByteArrayInputStream("café au lait".toByteArray()),
+                         ByteArrayInputStream("cafè au lait".toByteArray()))
+        assertEquals(listOf(Difference(3, "é", 3, "è", "caf", " au lait", false)), diffs)
+    }
+
+    // About 40MB of characters, never held in memory all at once.
+    @Test
+    fun testLargeStreams() {
+        val lines = 3_000_000
+        val diffs = diff(LinesReader(lines, mapOf()),
+                         LinesReader(lines, mapOf(10 to "line ten\n",
+                                                  2_000_000 to "",
+                                                  2_999_999 to "line 2999999 and more\n")))
+        assertEquals(3, diffs.size)
+        assertEquals("10", diffs[0].first)
+        assertEquals("ten", diffs[0].second)
+        // One deleted line of 13 chars, though a char diff may line it up a little differently.
+        assertEquals(13, diffs[1].first.length - diffs[1].second.length)
+        assertEquals("", diffs[2].first)
+        assertEquals(" and more", diffs[2].second)
+        assertFalse(diffs[2].truncated)
+    }
+
+    @Test
+    fun testBadArgs() {
+        assertThrows<IllegalArgumentException> { diffStrings("a", "b", maxDifferences = 0) }
+        assertThrows<IllegalArgumentException> { diffStrings("a", "b", context = -1) }
+        assertThrows<IllegalArgumentException> { diffStrings("a", "b", window = 0) }
+    }
+}